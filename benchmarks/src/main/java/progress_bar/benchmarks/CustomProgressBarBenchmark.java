@@ -0,0 +1,91 @@
+package progress_bar.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import progress_bar.CustomProgressBar;
+import progress_bar.ProgressModel;
+
+/**
+ * Calls per second of the progress reporting methods of a
+ * {@link CustomProgressBar}, whose refreshes go through the real
+ * {@code UpdateDispatcher} of a {@link StubDisplay}. Without frames the
+ * dispatcher stays scheduled and every refresh is coalesced with the pending
+ * one, as when the ui thread is busy. Run with {@code -prof gc} to get the
+ * allocation per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CustomProgressBarBenchmark {
+
+	// a full bar every million of calls
+	private static final double PROGRESS = 1e-4;
+
+	private StubDisplay display;
+	private CustomProgressBar bar;
+	private int percent;
+
+	@Setup(Level.Iteration)
+	public void setup() {
+		this.display = new StubDisplay();
+		this.bar = this.display.createCustomBar(new ProgressModel());
+	}
+
+	@Benchmark
+	@Threads(1)
+	public void addProgress() {
+		add();
+	}
+
+	@Benchmark
+	@Threads(32)
+	public void addProgressContended() {
+		add();
+	}
+
+	/**
+	 * Every call requests a refresh, coalesced with the pending one
+	 */
+	@Benchmark
+	@Threads(1)
+	public void setProgress() {
+		this.percent = (this.percent + 1) % 100;
+		this.bar.setProgress(this.percent);
+	}
+
+	/**
+	 * Every call requests a refresh and applies it, as a frame of the ui thread
+	 */
+	@Benchmark
+	@Threads(1)
+	public boolean frame() {
+		this.percent = (this.percent + 1) % 100;
+		this.bar.setProgress(this.percent);
+		return this.display.runPending();
+	}
+
+	private void add() {
+
+		this.bar.addProgress(PROGRESS);
+
+		// start again, otherwise we would only measure a full bar
+		if (this.bar.isCompleted())
+			this.bar.setProgress(0);
+	}
+}
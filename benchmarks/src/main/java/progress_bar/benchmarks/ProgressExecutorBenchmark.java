@@ -0,0 +1,79 @@
+package progress_bar.benchmarks;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import progress_bar.ProgressExecutorService;
+import progress_bar.ProgressModel;
+
+/**
+ * Cost of scheduling short tasks through a {@link ProgressExecutorService},
+ * compared with submitting them directly to the same thread pool
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProgressExecutorBenchmark {
+
+	@Param({ "10000" })
+	public int tasks;
+
+	@Param({ "4" })
+	public int threads;
+
+	private ExecutorService pool;
+
+	@Setup
+	public void setup() {
+		this.pool = Executors.newFixedThreadPool(this.threads);
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.pool.shutdown();
+	}
+
+	@Benchmark
+	public void plain() throws InterruptedException {
+		run(this.pool);
+	}
+
+	@Benchmark
+	public void tracked() throws InterruptedException {
+		run(new ProgressExecutorService(this.pool, new ProgressModel()));
+	}
+
+	private void run(ExecutorService executor) throws InterruptedException {
+
+		final CountDownLatch latch = new CountDownLatch(this.tasks);
+
+		for (int i = 0; i < this.tasks; i++) {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					latch.countDown();
+				}
+			});
+		}
+
+		latch.await();
+	}
+}
@@ -0,0 +1,93 @@
+package progress_bar.benchmarks;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import progress_bar.ProgressList;
+import progress_bar.ProgressStep;
+import progress_bar.ProgressStepListener;
+
+/**
+ * Overhead of {@link ProgressList#start()} with empty steps, in the calling
+ * thread or in parallel on an executor. Divide the score by the number of steps
+ * to get the overhead per step.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProgressListBenchmark {
+
+	@Param({ "10", "100" })
+	public int steps;
+
+	@Param({ "false", "true" })
+	public boolean parallel;
+
+	private ProgressList list;
+	private ExecutorService executor;
+	private double progress;
+
+	@Setup
+	public void setup() {
+
+		this.list = new ProgressList(100);
+
+		for (int i = 0; i < this.steps; i++) {
+			this.list.add(new ProgressStep("step" + i) {
+				@Override
+				public void execute() {
+				}
+			});
+		}
+
+		this.list.addProgressListener(new ProgressStepListener() {
+
+			@Override
+			public void progressStepStarted(ProgressStep step) {
+			}
+
+			@Override
+			public void progressChanged(ProgressStep step, double addProgress, int maxProgress) {
+				ProgressListBenchmark.this.progress += addProgress;
+			}
+
+			@Override
+			public void failed(ProgressStep step) {
+			}
+		});
+
+		if (this.parallel) {
+			this.executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+			this.list.setExecutor(this.executor);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		if (this.executor != null)
+			this.executor.shutdown();
+	}
+
+	@Benchmark
+	public double start() {
+		this.list.start();
+		return this.progress;
+	}
+}
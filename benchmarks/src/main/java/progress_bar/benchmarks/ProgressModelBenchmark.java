@@ -0,0 +1,112 @@
+package progress_bar.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import progress_bar.ProgressListener;
+import progress_bar.ProgressModel;
+
+/**
+ * Calls per second of the progress reporting methods of a bar, rendered on a
+ * {@link StubDisplay}. Run with {@code -prof gc} to get the allocation per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProgressModelBenchmark {
+
+	// a full bar every million of calls
+	private static final double PROGRESS = 1e-4;
+
+	@Param({ "0", "1", "8" })
+	public int listeners;
+
+	private StubDisplay display;
+	private ProgressModel model;
+	private int percent;
+
+	@Setup(Level.Iteration)
+	public void setup(final Blackhole blackhole) {
+
+		this.display = new StubDisplay();
+		this.model = new ProgressModel();
+		this.display.createBar(this.model);
+
+		for (int i = 0; i < this.listeners; i++) {
+			this.model.addProgressListener(new ProgressListener() {
+
+				@Override
+				public void progressChanged(double currentProgress, double maxProgress) {
+					blackhole.consume(currentProgress);
+				}
+
+				@Override
+				public void progressChanged(double currentProgress) {
+				}
+
+				@Override
+				public void progressCompleted() {
+				}
+
+				@Override
+				public void progressStopped(Exception exception) {
+				}
+			});
+		}
+	}
+
+	@Benchmark
+	@Threads(1)
+	public void addProgress() {
+		add();
+	}
+
+	@Benchmark
+	@Threads(32)
+	public void addProgressContended() {
+		add();
+	}
+
+	/**
+	 * Every call notifies all the listeners
+	 */
+	@Benchmark
+	@Threads(1)
+	public void setProgress() {
+		this.percent = (this.percent + 1) % 100;
+		this.model.setProgress(this.percent);
+	}
+
+	@Benchmark
+	@Threads(1)
+	public int frame() {
+		this.model.setProgress(this.percent++ % 100);
+		return this.display.frame();
+	}
+
+	private void add() {
+
+		this.model.addProgress(PROGRESS);
+
+		// start again, otherwise we would only measure a full bar
+		if (this.model.isCompleted())
+			this.model.setProgress(0);
+	}
+}
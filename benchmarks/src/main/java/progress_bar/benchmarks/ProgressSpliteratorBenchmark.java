@@ -0,0 +1,58 @@
+package progress_bar.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import progress_bar.ProgressModel;
+import progress_bar.ProgressSpliterator;
+
+/**
+ * Overhead of {@link ProgressSpliterator} on a parallel stream with a cheap
+ * operation for each element, compared with the bare parallel stream
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProgressSpliteratorBenchmark {
+
+	@Param({ "1000000" })
+	public int elements;
+
+	private List<Integer> list;
+
+	@Setup
+	public void setup() {
+
+		this.list = new ArrayList<>(this.elements);
+
+		for (int i = 0; i < this.elements; i++)
+			this.list.add(i);
+	}
+
+	@Benchmark
+	public long bare() {
+		return this.list.parallelStream().mapToLong(Integer::longValue).sum();
+	}
+
+	@Benchmark
+	public long tracked() {
+		ProgressModel progress = new ProgressModel();
+		return ProgressSpliterator.stream(this.list, progress, 100).mapToLong(Integer::longValue).sum();
+	}
+}
@@ -0,0 +1,134 @@
+package progress_bar.benchmarks;
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import progress_bar.CustomProgressBar;
+import progress_bar.ProgressListener;
+import progress_bar.ProgressModel;
+import progress_bar.UpdateDispatcher;
+
+/**
+ * Headless replacement of the display used by the benchmarks. It collects the
+ * bars to refresh as the {@code UpdateDispatcher} does, without any SWT
+ * widget, so that the cost of reporting a progress to a bar can be measured
+ * without a real display.
+ *
+ * It can also be the ui thread of a real {@link UpdateDispatcher}, for the
+ * {@link CustomProgressBar}s without widget: the runnables posted by the
+ * dispatcher are not executed until {@link #runPending()} is called.
+ */
+public class StubDisplay implements UpdateDispatcher.UiExecutor {
+
+	private Set<Bar> dirty;
+	private UpdateDispatcher dispatcher;
+	private volatile Runnable pending; // posted by the dispatcher
+
+	public StubDisplay() {
+		this.dirty = ConcurrentHashMap.newKeySet();
+		this.dispatcher = UpdateDispatcher.create(this);
+
+		// every frame applies the updates, the benchmarks set the pace
+		this.dispatcher.setFrameInterval(0);
+	}
+
+	/**
+	 * Create a bar without widget, refreshed by the dispatcher of this display
+	 *
+	 * @param model
+	 * @return
+	 */
+	public CustomProgressBar createCustomBar(ProgressModel model) {
+		return new CustomProgressBar(model, this.dispatcher);
+	}
+
+	/**
+	 * Execute the runnable posted by the dispatcher, as the ui thread does
+	 *
+	 * @return true if there was a runnable to execute
+	 */
+	public boolean runPending() {
+
+		Runnable runnable = this.pending;
+
+		if (runnable == null)
+			return false;
+
+		this.pending = null;
+		runnable.run();
+
+		return true;
+	}
+
+	@Override
+	public void asyncExec(Runnable runnable) {
+		this.pending = runnable;
+	}
+
+	@Override
+	public void timerExec(int millis, Runnable runnable) {
+		this.pending = runnable;
+	}
+
+	@Override
+	public boolean isDisposed() {
+		return false;
+	}
+
+	/**
+	 * Create a bar which renders the model on this display
+	 * 
+	 * @param model
+	 * @return
+	 */
+	public Bar createBar(ProgressModel model) {
+		Bar bar = new Bar();
+		model.addProgressListener(bar);
+		return bar;
+	}
+
+	/**
+	 * Apply all the pending refreshes, as a frame of the ui thread does
+	 * 
+	 * @return the last selection shown
+	 */
+	public int frame() {
+
+		int shown = 0;
+		for (Iterator<Bar> i = this.dirty.iterator(); i.hasNext();) {
+			Bar bar = i.next();
+			i.remove();
+			shown = bar.selection;
+		}
+
+		return shown;
+	}
+
+	/**
+	 * Bar which keeps the latest selection and asks to be refreshed, as the
+	 * {@code CustomProgressBar} does
+	 */
+	public class Bar implements ProgressListener {
+
+		private volatile int selection;
+
+		@Override
+		public void progressChanged(double currentProgress, double maxProgress) {
+			this.selection = (int) currentProgress;
+			StubDisplay.this.dirty.add(this);
+		}
+
+		@Override
+		public void progressChanged(double currentProgress) {
+		}
+
+		@Override
+		public void progressCompleted() {
+		}
+
+		@Override
+		public void progressStopped(Exception exception) {
+		}
+	}
+}
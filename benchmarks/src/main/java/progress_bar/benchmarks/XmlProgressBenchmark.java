@@ -0,0 +1,143 @@
+package progress_bar.benchmarks;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import progress_bar.ProgressModel;
+import progress_bar.XmlProgressReader;
+
+/**
+ * Cost of tracking the progress of a large xml import with
+ * {@link XmlProgressReader}, compared with reading the same file with a plain
+ * StAX reader. The file is built by repeating the records of one of the test
+ * files up to the requested size, run the benchmark from the root of the
+ * project to find it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class XmlProgressBenchmark {
+
+	private static final String RECORD = "result";
+
+	@Param({ "resources/test-files/BE1011.01.xml" })
+	public String source;
+
+	@Param({ "1024" })
+	public int sizeMb;
+
+	private XMLInputFactory factory;
+	private File file;
+
+	@Setup
+	public void setup() throws IOException {
+
+		this.factory = XMLInputFactory.newInstance();
+		this.file = File.createTempFile("progress-benchmark", ".xml");
+
+		String xml = new String(Files.readAllBytes(Paths.get(this.source)), StandardCharsets.UTF_8);
+
+		int start = xml.indexOf("<" + RECORD + ">");
+		int end = xml.lastIndexOf("</" + RECORD + ">") + RECORD.length() + 3;
+
+		byte[] header = xml.substring(0, start).getBytes(StandardCharsets.UTF_8);
+		byte[] records = xml.substring(start, end).getBytes(StandardCharsets.UTF_8);
+		byte[] footer = xml.substring(end).getBytes(StandardCharsets.UTF_8);
+
+		long size = this.sizeMb * 1024L * 1024L;
+
+		try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(this.file.toPath()), 1 << 20);) {
+
+			output.write(header);
+
+			for (long written = header.length; written < size; written = written + records.length)
+				output.write(records);
+
+			output.write(footer);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.file.delete();
+	}
+
+	@Benchmark
+	public long plain() throws IOException, XMLStreamException {
+
+		try (InputStream input = new FileInputStream(this.file);) {
+			return read(this.factory.createXMLStreamReader(input));
+		}
+	}
+
+	@Benchmark
+	public long countedTotal() throws IOException, XMLStreamException {
+		return tracked(XmlProgressReader.countRecords(this.file, RECORD));
+	}
+
+	@Benchmark
+	public long estimatedTotal() throws IOException, XMLStreamException {
+		return tracked(XmlProgressReader.estimateRecords(this.file, XmlProgressReader.DEFAULT_SAMPLE, RECORD));
+	}
+
+	@Benchmark
+	public long countOnly() throws IOException {
+		return XmlProgressReader.countRecords(this.file, RECORD);
+	}
+
+	private long tracked(long total) throws IOException, XMLStreamException {
+
+		ProgressModel progress = new ProgressModel();
+
+		try (InputStream input = new FileInputStream(this.file);) {
+			read(new XmlProgressReader(this.factory.createXMLStreamReader(input), progress, 100, total, RECORD));
+		}
+
+		return progress.getProgress();
+	}
+
+	/**
+	 * Read all the events, counting the start elements
+	 */
+	private static long read(XMLStreamReader reader) throws XMLStreamException {
+
+		long elements = 0;
+
+		while (reader.hasNext()) {
+			if (reader.next() == XMLStreamReader.START_ELEMENT)
+				elements++;
+		}
+
+		reader.close();
+
+		return elements;
+	}
+}
@@ -0,0 +1,134 @@
+package progress_bar;
+
+/**
+ * Converts the bytes processed of a file (or of any stream of known size) in
+ * progress. The bytes are accumulated and reported to the progress in batches,
+ * so that counting them costs only an addition:
+ *
+ * <pre>
+ * ByteProgress bytes = new ByteProgress(bar, file.length(), 100);
+ * MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, file.length());
+ * while (buffer.hasRemaining()) {
+ * 	parse(buffer);
+ * 	bytes.setPosition(buffer.position());
+ * }
+ * </pre>
+ *
+ * Used by {@link ProgressInputStream} and {@link ProgressByteChannel}. It is
+ * not thread safe, each stream should have its own.
+ */
+public class ByteProgress {
+
+	public static final long MIN_BATCH = 64 * 1024; // bytes
+	public static final int BATCHES = 1000; // batches for the whole size
+
+	private IProgress progress;
+	private long size; // total bytes
+	private double work; // progress of all the bytes
+	private double scale; // progress for a byte
+	private long batch; // bytes reported together
+
+	private long position; // bytes processed
+	private long reportedPosition; // bytes already reported
+	private double reported; // progress already reported
+
+	/**
+	 * Create the byte progress
+	 *
+	 * @param progress the progress where the bytes are reported
+	 * @param size     total bytes, e.g. the size of the file
+	 * @param work     progress corresponding to all the bytes
+	 */
+	public ByteProgress(IProgress progress, long size, double work) {
+		this(progress, size, work, Math.max(MIN_BATCH, size / BATCHES));
+	}
+
+	/**
+	 * Create the progress of a process made of units other than bytes (e.g. the
+	 * records of a file)
+	 *
+	 * @param progress the progress where the units are reported
+	 * @param size     total units
+	 * @param work     progress corresponding to all the units
+	 * @param batch    units reported together
+	 */
+	public ByteProgress(IProgress progress, long size, double work, long batch) {
+		this.progress = progress;
+		this.size = size;
+		this.work = work;
+		this.scale = size > 0 ? work / size : 0;
+		this.batch = Math.max(1, batch);
+	}
+
+	/**
+	 * Add processed bytes. They are reported once they reach a batch.
+	 *
+	 * @param bytes
+	 */
+	public void add(long bytes) {
+
+		this.position = this.position + bytes;
+
+		if (this.position - this.reportedPosition >= this.batch)
+			report();
+	}
+
+	/**
+	 * Set the bytes processed from the start, e.g. the position in a memory
+	 * mapped buffer. Positions before the current one are ignored.
+	 *
+	 * @param position
+	 */
+	public void setPosition(long position) {
+
+		if (position <= this.position)
+			return;
+
+		add(position - this.position);
+	}
+
+	/**
+	 * Report all the remaining progress, called when all the bytes were
+	 * processed
+	 */
+	public void finish() {
+
+		this.position = Math.max(this.position, this.size);
+
+		report();
+	}
+
+	/**
+	 * Report the bytes processed and not reported yet
+	 */
+	private void report() {
+
+		this.reportedPosition = this.position;
+
+		// never report more than the work (the file could grow)
+		double target = Math.min(this.work, this.position * this.scale);
+		double amount = target - this.reported;
+
+		// check if the process was cancelled once per batch
+		this.progress.getCancellationToken().throwIfCancelled();
+
+		if (amount <= 0)
+			return;
+
+		this.reported = target;
+		this.progress.addProgress(amount);
+	}
+
+	/**
+	 * Get the bytes processed
+	 *
+	 * @return
+	 */
+	public long getPosition() {
+		return this.position;
+	}
+
+	public long getSize() {
+		return this.size;
+	}
+}
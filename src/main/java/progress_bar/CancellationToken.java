@@ -0,0 +1,176 @@
+package progress_bar;
+
+import java.util.concurrent.CancellationException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Request to stop a process, checked by the process itself. The code doing the
+ * work checks {@link #isCancelled()} (a single volatile read, so it can be
+ * done in the inner loops) or calls {@link #throwIfCancelled()}:
+ *
+ * <pre>
+ * CancellationToken token = progress.getCancellationToken();
+ * for (Record record : records) {
+ * 	token.throwIfCancelled();
+ * 	importRecord(record);
+ * 	progress.addProgress(step);
+ * }
+ * </pre>
+ *
+ * Work which cannot check the token (e.g. blocked in I/O) can be stopped by a
+ * callback registered with {@link #onCancel(Runnable)}, for example closing the
+ * stream or interrupting the thread. Child tokens created with
+ * {@link #newChild()} are cancelled together with their parent, until they
+ * are closed with {@link #close()}.
+ */
+public class CancellationToken {
+
+	private static final Logger LOGGER = LogManager.getLogger(CancellationToken.class);
+
+	/**
+	 * Token which is never cancelled, for processes which cannot be cancelled.
+	 * Its callbacks are never run, so they are not kept.
+	 */
+	public static final CancellationToken NONE = new CancellationToken() {
+
+		@Override
+		public void cancel() {}
+
+		@Override
+		public void onCancel(Runnable callback) {}
+	};
+
+	private volatile boolean cancelled;
+	private ListenerList<Runnable> callbacks;
+
+	public CancellationToken() {
+		this.callbacks = new ListenerList<>(new Runnable[0]);
+	}
+
+	/**
+	 * Check if the cancellation was requested
+	 *
+	 * @return
+	 */
+	public boolean isCancelled() {
+		return this.cancelled;
+	}
+
+	/**
+	 * Stop the current process if the cancellation was requested
+	 *
+	 * @throws CancellationException if cancelled
+	 */
+	public void throwIfCancelled() {
+		if (this.cancelled)
+			throw new CancellationException("The process was cancelled");
+	}
+
+	/**
+	 * Request the cancellation. The callbacks and the child tokens are cancelled
+	 * in the calling thread. Nothing is done if already cancelled.
+	 */
+	public void cancel() {
+
+		synchronized (this) {
+
+			if (this.cancelled)
+				return;
+
+			this.cancelled = true;
+		}
+
+		for (Runnable callback : this.callbacks.get()) {
+
+			// a callback is run only once, also if
+			// it is being registered in the meantime
+			if (this.callbacks.remove(callback))
+				run(callback);
+		}
+	}
+
+	/**
+	 * Run the callback when the cancellation is requested, or immediately if
+	 * already cancelled
+	 *
+	 * @param callback
+	 */
+	public void onCancel(Runnable callback) {
+
+		this.callbacks.add(callback);
+
+		if (this.cancelled && this.callbacks.remove(callback))
+			run(callback);
+	}
+
+	/**
+	 * Remove a callback which is not needed anymore, e.g. since the work it
+	 * would stop is finished
+	 *
+	 * @param callback
+	 */
+	public void removeOnCancel(Runnable callback) {
+		this.callbacks.remove(callback);
+	}
+
+	/**
+	 * Create a token which is cancelled when this token is cancelled. The child
+	 * can also be cancelled alone, without cancelling this token. Close the
+	 * child when its work is finished, so that this token does not keep it.
+	 *
+	 * @return
+	 */
+	public CancellationToken newChild() {
+		return new Child(this);
+	}
+
+	/**
+	 * Release the token when the work it controls is finished. A child token
+	 * stops following its parent (see {@link #newChild()}), nothing is done for
+	 * the other tokens.
+	 */
+	public void close() {}
+
+	private static void run(Runnable callback) {
+		try {
+			callback.run();
+		} catch (RuntimeException e) {
+			LOGGER.error("Cancellation callback failed", e);
+		}
+	}
+
+	/**
+	 * Token cancelled with its parent. It is removed from the callbacks of the
+	 * parent when closed or cancelled.
+	 */
+	private static class Child extends CancellationToken implements Runnable {
+
+		private CancellationToken parent;
+
+		public Child(CancellationToken parent) {
+			this.parent = parent;
+			parent.onCancel(this);
+		}
+
+		/**
+		 * Called when the parent is cancelled
+		 */
+		@Override
+		public void run() {
+			cancel();
+		}
+
+		@Override
+		public void cancel() {
+			super.cancel();
+			close();
+		}
+
+		@Override
+		public void close() {
+			this.parent.removeOnCancel(this);
+		}
+	}
+}
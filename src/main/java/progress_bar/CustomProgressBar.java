@@ -1,34 +1,128 @@
 package progress_bar;
 
 
-import java.util.ArrayList;
-import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
 import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.DisposeEvent;
+import org.eclipse.swt.events.DisposeListener;
 import org.eclipse.swt.layout.GridData;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.ProgressBar;
 
 public class CustomProgressBar implements IProgressBar {
-	
-	private static final Logger LOGGER = LogManager.getLogger(CustomProgressBar.class);
 
 	private Composite parent;
 	private ProgressBar progressBar;
-	private Collection<ProgressListener> listeners;
-	
-	private int done = 0;
-	private double doneFract = 0;  // used to manage fractional progresses
-	private int progressLimit = 100;  // set this to limit the bar progress
-	private double progressStep = 1;  // progress gained by a single operation step
+	private ProgressModel model;
+	private UpdateDispatcher dispatcher;
+	private String metricsName;  // name of the published metrics, null if none
+	private ProgressListener modelListener;  // refreshes the bar
+
+	// latest selection to show in the ui thread
+	private final AtomicInteger pendingSelection = new AtomicInteger();
 	
+	// refreshes requested since the last one, counted only
+	// when recorded by the flight recorder
+	private final AtomicInteger requests = new AtomicInteger();
+
+	/**
+	 * Shows the latest pending selection. Applied in the ui thread.
+	 */
+	private final UpdateDispatcher.Update refresher = new UpdateDispatcher.Update() {
+		@Override
+		public void apply() {
+
+			ProgressBar bar = CustomProgressBar.this.progressBar;
+
+			if ( isDisposed() )
+				return;
+
+			Object event = ProgressEvents.beginRefresh();
+			int selection = CustomProgressBar.this.pendingSelection.get();
+
+			// nothing to show without widget
+			if ( bar != null ) {
+				bar.setSelection( selection );
+				bar.update();
+			}
+
+			int coalesced = CustomProgressBar.this.requests.getAndSet( 0 ) - 1;
+			ProgressEvents.endRefresh( event, selection, Math.max( 0, coalesced ) );
+		}
+	};
+
 	public CustomProgressBar( Composite parent, int style ) {
+		this( parent, style, new ProgressModel() );
+	}
+
+	/**
+	 * Create a progress bar which shows the progress of the model
+	 * @param parent
+	 * @param style
+	 * @param model the progress to show
+	 */
+	public CustomProgressBar( Composite parent, int style, ProgressModel model ) {
 		this.parent = parent;
-		this.listeners = new ArrayList<>();
+		this.model = model;
+		this.dispatcher = UpdateDispatcher.get( parent.getDisplay() );
 		InitialiseGraphics( style );
+		listen();
+
+		// we are in the ui thread, show the current progress directly
+		this.progressBar.setSelection( this.model.getProgress() );
+
+		// a closed bar does not follow the model nor publishes its metrics,
+		// the model can outlive it (e.g. shared with other bars)
+		this.progressBar.addDisposeListener( new DisposeListener() {
+
+			@Override
+			public void widgetDisposed( DisposeEvent event ) {
+				CustomProgressBar.this.model.removeProgressListener( CustomProgressBar.this.modelListener );
+				unregisterMetrics();
+			}
+		});
+	}
+
+	/**
+	 * Create a bar without widget, which requests its refreshes to
+	 * the dispatcher as a graphical bar but shows nothing. Used
+	 * to measure the cost of reporting the progress to a bar
+	 * without a display, see {@link UpdateDispatcher#create(UpdateDispatcher.UiExecutor)}.
+	 * {@link #getProgressBar()} and {@link #getDisplay()} return null.
+	 * @param model the progress to show
+	 * @param dispatcher dispatcher which applies the refreshes
+	 */
+	public CustomProgressBar( ProgressModel model, UpdateDispatcher dispatcher ) {
+		this.model = model;
+		this.dispatcher = dispatcher;
+		listen();
+	}
+
+	/**
+	 * Refresh the bar each time the model changes
+	 */
+	private void listen() {
+
+		this.modelListener = new ProgressListener() {
+
+			@Override
+			public void progressChanged( double currentProgress, double maxProgress ) {
+				refreshProgressBar( (int) currentProgress );
+			}
+
+			@Override
+			public void progressChanged( double currentProgress ) {}
+
+			@Override
+			public void progressCompleted() {}
+
+			@Override
+			public void progressStopped( Exception exception ) {}
+		};
+
+		this.model.addProgressListener( this.modelListener );
 	}
 	
 	/**
@@ -57,29 +151,55 @@ public class CustomProgressBar implements IProgressBar {
 		return this.progressBar;
 	}
 	
+	/**
+	 * Get the progress shown by this bar
+	 * @return
+	 */
+	public ProgressModel getModel() {
+		return this.model;
+	}
+	
+	/**
+	 * Publish the metrics of the progress with {@link ProgressMetrics},
+	 * until the bar is disposed or {@link #unregisterMetrics()} is called
+	 * @param name name of the metrics
+	 */
+	public synchronized void registerMetrics( String name ) {
+
+		unregisterMetrics();
+
+		this.model.registerMetrics( name );
+		this.metricsName = name;
+	}
+
+	/**
+	 * Remove the metrics published with {@link #registerMetrics(String)}, if any
+	 */
+	public synchronized void unregisterMetrics() {
+
+		if ( this.metricsName == null )
+			return;
+
+		this.model.unregisterMetrics( this.metricsName );
+		this.metricsName = null;
+	}
+	
+	@Override
+	public RateEstimator getRateEstimator() {
+		return this.model.getRateEstimator();
+	}
+
 	/**
 	 * Add a progress to the progress bar. The current progress
 	 * is added to the last progress. If a double < 1 is passed
 	 * we accumulate the progresses until we reach an integer, in order
-	 * to set the progress bar progresses
+	 * to set the progress bar progresses.
+	 * This method can be called concurrently by several threads.
 	 * @param progress
 	 */
 	@Override
 	public void addProgress ( double progress ) {
-
-		// add to the done fract the double progress
-		this.doneFract = this.doneFract + progress;
-
-		// when we reach the 1 with the done progress
-		// we can refresh the progress bar adding
-		// the integer part of the doneFract
-		if ( this.doneFract >= 1 ) {
-			
-			setProgress ( this.done + (int) this.doneFract );
-
-			// reset the doneFract double
-			this.doneFract = 0;
-		}
+		this.model.addProgress( progress );
 	}
 	
 	/**
@@ -87,62 +207,26 @@ public class CustomProgressBar implements IProgressBar {
 	 * @param percent
 	 */
 	public void setProgress ( double percent ) {
-
-		if ( percent >= 100 ) {
-			this.done = 100;
-		}
-		else if ( percent < 0 ) {
-			this.done = 0;
-		}
-		else {
-			this.done = (int) percent;
-		}
-		
-		// limit progress if required
-		if ( this.done > this.progressLimit ) {
-			this.done = this.progressLimit;
-		}
-
-		for ( ProgressListener listener : this.listeners ) {
-			listener.progressChanged(this.done, this.progressLimit);
-		}
-		
-		refreshProgressBar( this.done );
+		this.model.setProgress( percent );
 	}
 	
 	/**
-	 * Refresh the progress bar state
+	 * Refresh the progress bar state. Only the latest value is kept:
+	 * the bar is refreshed in the ui thread by the {@link UpdateDispatcher}
+	 * of its display, together with the other bars. The caller
+	 * thread is never blocked.
 	 */
 	public void refreshProgressBar ( final int done ) {
 
-		if ( this.progressBar.isDisposed() )
-			return;
-
-		Display disp = this.progressBar.getDisplay();
+		this.pendingSelection.set( done );
 
-		if ( disp.isDisposed() )
+		if ( isDisposed() )
 			return;
 
-		disp.asyncExec( new Runnable() {
-			@Override
-			public void run ( ) {
-
-				if ( CustomProgressBar.this.progressBar.isDisposed() )
-					return;
-
-				CustomProgressBar.this.progressBar.setSelection( done );
-				CustomProgressBar.this.progressBar.update();
-			}
-		} );
+		if ( ProgressEvents.isRefreshEnabled() )
+			this.requests.incrementAndGet();
 
-		try {
-			// set a small value! Otherwise the bar will slow all the Tool if often called
-			Thread.sleep(11);  
-		}
-		catch (InterruptedException e) {
-			LOGGER.error("There was a problem with the thread ", e);
-			e.printStackTrace();
-		}
+		this.dispatcher.post( this.refresher );
 	}
 	
 	/**
@@ -150,7 +234,7 @@ public class CustomProgressBar implements IProgressBar {
 	 * @param progressLimit
 	 */
 	public void setProgressLimit(int progressLimit) {
-		this.progressLimit = progressLimit;
+		this.model.setProgressLimit( progressLimit );
 	}
 	
 	/**
@@ -158,7 +242,7 @@ public class CustomProgressBar implements IProgressBar {
 	 * with {@link #setProgressLimit(int)}
 	 */
 	public void removeProgressLimit() {
-		this.progressLimit = 100;
+		this.model.removeProgressLimit();
 	}
 	
 
@@ -167,7 +251,7 @@ public class CustomProgressBar implements IProgressBar {
 	 * @return
 	 */
 	public boolean isCompleted() {
-		return this.done >= this.progressLimit;
+		return this.model.isCompleted();
 	}
 	
 	/**
@@ -178,27 +262,29 @@ public class CustomProgressBar implements IProgressBar {
 	 * @param progressStep
 	 */
 	public void setProgressStep(double progressStep) {
-		this.progressStep = progressStep;
+		this.model.setProgressStep( progressStep );
 	}
 	
 	/**
 	 * Increase the progress bar according to the
-	 * {@link #progressStep} variable
+	 * progress step set with {@link #setProgressStep(double)}
 	 */
 	public void nextStep() {
-		addProgress( this.progressStep );
+		this.model.nextStep();
 	}
 	
 	public boolean isDisposed() {
-		return this.progressBar.isDisposed();
+		return this.progressBar != null && this.progressBar.isDisposed();
 	}
 	
 	public Display getDisplay() {
-		return this.progressBar.getDisplay();
+		return this.progressBar == null ? null : this.progressBar.getDisplay();
 	}
 
 	@Override
-	public void setLabel(String label) {}
+	public void setLabel(String label) {
+		this.model.setLabel( label );
+	}
 
 	@Override
 	public void close() {}
@@ -208,18 +294,26 @@ public class CustomProgressBar implements IProgressBar {
 
 	@Override
 	public void addProgressListener(ProgressListener listener) {
-		this.listeners.add( listener );
+		this.model.addProgressListener( listener );
+	}
+
+	@Override
+	public void removeProgressListener(ProgressListener listener) {
+		this.model.removeProgressListener( listener );
 	}
 
 	@Override
 	public void stop( Exception exception ) {
-		for ( ProgressListener listener : this.listeners ) {
-			listener.progressStopped( exception );
-		}
+		this.model.stop( exception );
 	}
 
 	@Override
 	public void fillToMax() {
-		setProgress( this.progressLimit );
+		this.model.fillToMax();
+	}
+
+	@Override
+	public CancellationToken getCancellationToken() {
+		return this.model.getCancellationToken();
 	}
 }
@@ -1,5 +1,8 @@
 package progress_bar;
 
+import java.util.Collection;
+import java.util.List;
+
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.events.SelectionEvent;
 import org.eclipse.swt.events.SelectionListener;
@@ -21,6 +24,13 @@ import progress_bar.TableMultipleProgress.TableRow;
  * possible to access the progress bar using {@link TableRow#getBar()}.
  * This progress bar can be shared in threads and updated
  * directly by them using {@link IProgressBar#addProgress(double)}.
+ * To show thousands of progresses, create the form in virtual
+ * mode and access the progresses using {@link TableRow#getProgress()}.
+ * 
+ * If the user closes the form before {@link #done()} is called,
+ * the processes of the rows are cancelled (see {@link TableRow#cancel()}).
+ * To limit the processes running at the same time, submit them
+ * to a {@link ProgressJobManager} instead of adding the rows.
  * 
  * @author avonva
  * @author shahaal
@@ -33,9 +43,20 @@ public class FormMultipleProgress {
 	private Shell dialog;
 	private Button okBtn;
 	private Listener closeListener;
+	private boolean virtual;
 	
 	public FormMultipleProgress( Shell shell ) {
+		this( shell, false );
+	}
+	
+	/**
+	 * Create the form
+	 * @param shell
+	 * @param virtual true to use a virtual table, see {@link TableMultipleProgress}
+	 */
+	public FormMultipleProgress( Shell shell, boolean virtual ) {
 		this.shell = shell;
+		this.virtual = virtual;
 		init();
 	}
 
@@ -50,20 +71,18 @@ public class FormMultipleProgress {
 
 		this.dialog.setSize( 500, 300 );
 
-		// do not close this window until finished
+		// closed before finishing, stop the processes
 		this.closeListener = new Listener() {
 
 			@Override
 			public void handleEvent(Event arg0) {
-				arg0.doit = false;
-				return;
+				cancel();
 			}
 		};
 		
-		// block closure of window
 		this.dialog.addListener( SWT.Close, this.closeListener );
 		
-		this.table = new TableMultipleProgress ( this.dialog );
+		this.table = new TableMultipleProgress ( this.dialog, this.virtual );
 		
 		this.okBtn = new Button ( this.dialog, SWT.NONE );
 		this.okBtn.setText( Messages.getString( "ProgressTable.CloseBtn" ) );
@@ -99,9 +118,28 @@ public class FormMultipleProgress {
 	public TableRow addRow ( String taskName ) {
 		return this.table.addRow(taskName);
 	}
+	
+	/**
+	 * Add several rows to the table in a single pass,
+	 * much faster than calling {@link #addRow(String)}
+	 * for each task
+	 * @param taskNames
+	 * @return the rows created, in the same order of the names
+	 */
+	public List<TableRow> addRows ( Collection<String> taskNames ) {
+		return this.table.addRows(taskNames);
+	}
+
+	/**
+	 * Cancel the processes of all the rows
+	 */
+	public void cancel() {
+		this.table.cancelAll();
+	}
 
 	/**
-	 * Make the dialog closeable by the user
+	 * Notify that the processes are finished, closing
+	 * the dialog will not cancel them anymore
 	 */
 	public void done() {
 		this.dialog.removeListener( SWT.Close, this.closeListener );
@@ -20,6 +20,36 @@ public class FormProgressBar implements IProgressBar {
 	private String title;
 
 	private boolean opened; // if the bar is opened or not
+	private volatile boolean rateVisible = true; // if the rate is shown in the label
+
+	/**
+	 * Shows the latest label set. Applied in the ui thread.
+	 */
+	private final UpdateDispatcher.Update labelUpdate = new UpdateDispatcher.Update() {
+		@Override
+		public void apply() {
+
+			if (FormProgressBar.this.progressBar.isDisposed())
+				return;
+
+			ProgressModel model = FormProgressBar.this.progressBar.getModel();
+			String text = model.getLabel();
+
+			if (text == null)
+				text = FormProgressBar.this.title;
+
+			String rate = FormProgressBar.this.rateVisible ? model.getRateLabel() : null;
+
+			if (rate != null)
+				text = text == null ? rate : text + " (" + rate + ")";
+
+			if (FormProgressBar.this.label != null && text != null
+					&& !text.equals(FormProgressBar.this.label.getText())) {
+				FormProgressBar.this.label.setText(text);
+				FormProgressBar.this.progressBar.getProgressBar().getParent().layout();
+			}
+		}
+	};
 
 	/**
 	 * Constructor, Initialize the progress bar
@@ -43,6 +73,30 @@ public class FormProgressBar implements IProgressBar {
 		return this.progressBar.getProgressBar();
 	}
 
+	/**
+	 * Get the progress shown by the bar
+	 * 
+	 * @return
+	 */
+	public ProgressModel getModel() {
+		return this.progressBar.getModel();
+	}
+
+	@Override
+	public RateEstimator getRateEstimator() {
+		return this.progressBar.getRateEstimator();
+	}
+
+	/**
+	 * Set if the rate and the time to complete, e.g. "12.3k items/s, ETA 4m",
+	 * are shown next to the label. Shown by default.
+	 * 
+	 * @param rateVisible
+	 */
+	public void setRateVisible(boolean rateVisible) {
+		this.rateVisible = rateVisible;
+	}
+
 	/**
 	 * Initialise the progress bar without cancel button
 	 * 
@@ -87,6 +141,29 @@ public class FormProgressBar implements IProgressBar {
 		// progress bar
 		this.progressBar = new CustomProgressBar(currentShell, SWT.SMOOTH);
 
+		// refresh the rate shown in the label when the progress changes
+		final UpdateDispatcher dispatcher = UpdateDispatcher.get(parentShell.getDisplay());
+		this.progressBar.addProgressListener(new ProgressListener() {
+
+			@Override
+			public void progressChanged(double currentProgress, double maxProgress) {
+				if (FormProgressBar.this.rateVisible)
+					dispatcher.post(FormProgressBar.this.labelUpdate);
+			}
+
+			@Override
+			public void progressChanged(double currentProgress) {
+			}
+
+			@Override
+			public void progressCompleted() {
+			}
+
+			@Override
+			public void progressStopped(Exception exception) {
+			}
+		});
+
 		Monitor primary = parentShell.getMonitor();
 		Rectangle bounds = primary.getBounds();
 		Rectangle pict = currentShell.getBounds();
@@ -223,6 +300,8 @@ public class FormProgressBar implements IProgressBar {
 	@Override
 	public void setLabel(String text) {
 
+		this.progressBar.setLabel(text);
+
 		if (this.progressBar.isDisposed())
 			return;
 
@@ -230,24 +309,8 @@ public class FormProgressBar implements IProgressBar {
 		if (!isOpened())
 			open();
 
-		Display disp = this.progressBar.getDisplay();
-
-		if (disp.isDisposed())
-			return;
-
-		disp.asyncExec(new Runnable() {
-			@Override
-			public void run() {
-
-				if (FormProgressBar.this.progressBar.isDisposed())
-					return;
-
-				if (FormProgressBar.this.label != null) {
-					FormProgressBar.this.label.setText(text);
-					FormProgressBar.this.progressBar.getProgressBar().getParent().layout();
-				}
-			}
-		});
+		// shown in the ui thread together with the other updates
+		UpdateDispatcher.get(this.progressBar.getDisplay()).post(this.labelUpdate);
 	}
 
 	/**
@@ -273,8 +336,18 @@ public class FormProgressBar implements IProgressBar {
 		this.progressBar.addProgressListener(listener);
 	}
 
+	@Override
+	public void removeProgressListener(ProgressListener listener) {
+		this.progressBar.removeProgressListener(listener);
+	}
+
 	@Override
 	public void stop(Exception e) {
 		this.progressBar.stop(e);
 	}
+
+	@Override
+	public CancellationToken getCancellationToken() {
+		return this.progressBar.getCancellationToken();
+	}
 }
@@ -0,0 +1,35 @@
+package progress_bar;
+
+/**
+ * Progress of a process, without any graphical dependency.
+ * It can be used to report the progress in headless
+ * processes (see {@link ProgressModel}) or it can be shown
+ * by a graphical progress bar (see {@link IProgressBar}).
+ */
+public interface IProgress {
+	public void addProgress(double progress);
+	public void setLabel (String label);
+	public void stop(Exception exception);
+	public void addProgressListener(ProgressListener listener);
+
+	/**
+	 * Remove a listener added with {@link #addProgressListener(ProgressListener)}.
+	 * Does nothing by default, for the implementations which
+	 * do not support it.
+	 * @param listener
+	 */
+	public default void removeProgressListener(ProgressListener listener) {}
+
+	public void fillToMax();
+
+	/**
+	 * Get the token used to cancel the process which
+	 * reports this progress. The process should check
+	 * it while working and stop when it is cancelled.
+	 * By default the process cannot be cancelled.
+	 * @return
+	 */
+	public default CancellationToken getCancellationToken() {
+		return CancellationToken.NONE;
+	}
+}
@@ -2,13 +2,18 @@ package progress_bar;
 
 import org.eclipse.swt.widgets.ProgressBar;
 
-public interface IProgressBar {
+public interface IProgressBar extends IProgress {
 	public ProgressBar getProgressBar();
-	public void addProgress(double progress);
-	public void setLabel (String label);
-	public void stop(Exception exception);
 	public void close();
 	public void open();
-	public void addProgressListener(ProgressListener listener);
-	public void fillToMax();
+
+	/**
+	 * Get the estimator of the rate of the progress,
+	 * used to show the speed and the time to complete
+	 * @return the estimator, null by default if the
+	 * bar does not estimate its rate
+	 */
+	public default RateEstimator getRateEstimator() {
+		return null;
+	}
 }
@@ -0,0 +1,72 @@
+package progress_bar;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * List of listeners which can be changed while the listeners are notified
+ * by other threads. Each change copies the array of the listeners, while
+ * notifying only needs to read the current array with {@link #get()}.
+ *
+ * @param <T> type of the listeners
+ */
+public class ListenerList<T> implements Serializable {
+
+	private static final long serialVersionUID = -4387410946423174917L;
+
+	private volatile T[] listeners;
+
+	/**
+	 * Create an empty list
+	 * @param empty empty array of the type of the listeners
+	 */
+	public ListenerList(T[] empty) {
+		this.listeners = empty;
+	}
+
+	/**
+	 * Add a listener
+	 * @param listener
+	 */
+	public synchronized void add(T listener) {
+		T[] current = this.listeners;
+		T[] updated = Arrays.copyOf(current, current.length + 1);
+		updated[current.length] = listener;
+		this.listeners = updated;
+	}
+
+	/**
+	 * Remove a listener if present
+	 * @param listener
+	 * @return true if the listener was removed
+	 */
+	public synchronized boolean remove(T listener) {
+
+		T[] current = this.listeners;
+
+		for (int i = 0; i < current.length; i++) {
+
+			if (current[i] != listener)
+				continue;
+
+			T[] updated = Arrays.copyOf(current, current.length - 1);
+			System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+			this.listeners = updated;
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Get the listeners to notify. The array must not be modified.
+	 * @return
+	 */
+	public T[] get() {
+		return this.listeners;
+	}
+
+	public boolean isEmpty() {
+		return this.listeners.length == 0;
+	}
+}
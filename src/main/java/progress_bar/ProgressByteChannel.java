@@ -0,0 +1,129 @@
+package progress_bar;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Channel which reports the bytes read to a progress, in batches (see
+ * {@link ByteProgress}). The bytes are read directly in the buffer of the
+ * caller, so direct buffers are not copied. The progress is completed when the
+ * end of the channel is reached.
+ *
+ * Use {@link #transfer(FileChannel, WritableByteChannel, IProgress, double)}
+ * to copy a file with {@link FileChannel#transferTo(long, long, WritableByteChannel)}
+ * (zero copy) while reporting the progress.
+ */
+public class ProgressByteChannel implements ReadableByteChannel {
+
+	// bytes transferred at once, large enough to keep the zero copy efficient
+	private static final long TRANSFER_CHUNK = 8 * 1024 * 1024;
+
+	private ReadableByteChannel channel;
+	private ByteProgress bytes;
+
+	/**
+	 * Wrap a channel
+	 *
+	 * @param channel  the channel to read
+	 * @param size     total bytes of the channel
+	 * @param progress progress where the bytes are reported
+	 * @param work     progress corresponding to the whole channel
+	 */
+	public ProgressByteChannel(ReadableByteChannel channel, long size, IProgress progress, double work) {
+		this.channel = channel;
+		this.bytes = new ByteProgress(progress, size, work);
+	}
+
+	/**
+	 * Wrap a file channel, the size is the one of the file
+	 *
+	 * @param channel
+	 * @param progress
+	 * @param work
+	 * @throws IOException
+	 */
+	public ProgressByteChannel(FileChannel channel, IProgress progress, double work) throws IOException {
+		this(channel, channel.size(), progress, work);
+	}
+
+	@Override
+	public int read(ByteBuffer buffer) throws IOException {
+
+		int read = this.channel.read(buffer);
+
+		if (read < 0)
+			this.bytes.finish();
+		else
+			this.bytes.add(read);
+
+		return read;
+	}
+
+	@Override
+	public boolean isOpen() {
+		return this.channel.isOpen();
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.channel.close();
+	}
+
+	/**
+	 * Get the bytes read
+	 *
+	 * @return
+	 */
+	public long getPosition() {
+		return this.bytes.getPosition();
+	}
+
+	/**
+	 * Copy all the content of a file to the target channel, using the zero copy
+	 * transfer of the file channel. The progress is reported after each chunk.
+	 *
+	 * @param source   the file to copy
+	 * @param target   where to copy it
+	 * @param progress progress where the bytes are reported
+	 * @param work     progress corresponding to the whole file
+	 * @return the bytes copied
+	 * @throws IOException
+	 */
+	public static long transfer(FileChannel source, WritableByteChannel target, IProgress progress, double work)
+			throws IOException {
+
+		long size = source.size();
+
+		ByteProgress bytes = new ByteProgress(progress, size, work);
+
+		long position = 0;
+
+		while (position < size) {
+
+			long transferred = source.transferTo(position, Math.min(TRANSFER_CHUNK, size - position), target);
+
+			if (transferred <= 0) {
+
+				// the file was truncated in the meantime
+				if (position >= source.size())
+					break;
+
+				// the target cannot accept bytes now (e.g. a non blocking socket)
+				Thread.yield();
+				continue;
+			}
+
+			position = position + transferred;
+
+			bytes.add(transferred);
+		}
+
+		if (position >= size)
+			bytes.finish();
+
+		return position;
+	}
+}
@@ -0,0 +1,438 @@
+package progress_bar;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Moves the progress events out of the threads which report the progress. The
+ * pipeline is registered as listener of a progress and it publishes each event
+ * in a bounded ring of preallocated events. The listeners added to the
+ * pipeline with {@link #addListener(ProgressListener)} consume the events in
+ * their own thread, in the same order, so a slow listener never stalls the
+ * worker threads:
+ *
+ * <pre>
+ * ProgressEventPipeline pipeline = new ProgressEventPipeline(256, OverflowPolicy.COALESCE);
+ * pipeline.addListener(logListener);
+ * bar.addProgressListener(pipeline);
+ * </pre>
+ *
+ * When a listener is so slow that the ring is full, the {@link OverflowPolicy}
+ * decides what happens to the new events. Call {@link #close()} to stop the
+ * threads of the listeners.
+ */
+public class ProgressEventPipeline implements ProgressListener {
+
+	private static final Logger LOGGER = LogManager.getLogger(ProgressEventPipeline.class);
+
+	private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+	private static final long BLOCK_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+	// types of the events
+	private static final int CHANGED = 0;
+	private static final int CHANGED_CURRENT = 1;
+	private static final int COMPLETED = 2;
+	private static final int STOPPED = 3;
+
+	/**
+	 * What to do when a new event is published but the slowest listener did not
+	 * consume the oldest events yet
+	 */
+	public enum OverflowPolicy {
+
+		/**
+		 * Overwrite the oldest events, the slow listeners skip them. The worker
+		 * never waits.
+		 */
+		DROP_OLDEST,
+
+		/**
+		 * Keep only the latest progress until there is space again. Listeners
+		 * always receive the last progress, but not all the intermediate ones.
+		 * Completion and stop events are never lost, for them the worker waits.
+		 */
+		COALESCE,
+
+		/**
+		 * The worker waits until the slowest listener consumes an event. No event
+		 * is lost.
+		 */
+		BLOCK
+	}
+
+	private Event[] ring;
+	private int mask;
+	private OverflowPolicy policy;
+	private volatile long published; // number of events published
+	private volatile Reader[] readers;
+	private volatile boolean closed;
+	private AtomicLong dropped;
+
+	// latest progress, read by the listeners which caught up (seqlock,
+	// odd while it is written) in order to receive the coalesced progresses
+	private Event latest;
+	private volatile long latestLock;
+	private long progressVersion; // version of the last progress, accessed by the writer
+	private boolean coalesced; // if the latest progress is not in the ring, accessed by the writer
+
+	/**
+	 * Create the pipeline
+	 *
+	 * @param capacity maximum number of events waiting to be consumed by a
+	 *                 listener (rounded up to a power of two)
+	 * @param policy   what to do when the ring is full
+	 */
+	public ProgressEventPipeline(int capacity, OverflowPolicy policy) {
+
+		int size = 2;
+		while (size < capacity)
+			size = size << 1;
+
+		this.ring = new Event[size];
+		for (int i = 0; i < size; i++)
+			this.ring[i] = new Event();
+
+		this.mask = size - 1;
+		this.policy = policy;
+		this.readers = new Reader[0];
+		this.dropped = new AtomicLong();
+		this.latest = new Event();
+	}
+
+	/**
+	 * Add a listener which consumes the events in its own thread. The listener
+	 * receives the events published from now on (and the latest progress, if
+	 * any).
+	 *
+	 * @param listener
+	 */
+	public synchronized void addListener(ProgressListener listener) {
+
+		Reader reader = new Reader(listener, this.published);
+
+		Reader[] current = this.readers;
+		Reader[] updated = Arrays.copyOf(current, current.length + 1);
+		updated[current.length] = reader;
+		this.readers = updated;
+
+		reader.thread.start();
+	}
+
+	/**
+	 * Stop the threads of the listeners. Events not yet consumed are discarded.
+	 */
+	public void close() {
+
+		this.closed = true;
+
+		for (Reader reader : this.readers)
+			LockSupport.unpark(reader.thread);
+	}
+
+	/**
+	 * Get how many events were not received by the listeners since the ring was
+	 * full (with the {@link OverflowPolicy#DROP_OLDEST} policy)
+	 *
+	 * @return
+	 */
+	public long getDropped() {
+		return this.dropped.get();
+	}
+
+	@Override
+	public void progressChanged(double currentProgress, double maxProgress) {
+		publish(CHANGED, currentProgress, maxProgress, null);
+	}
+
+	@Override
+	public void progressChanged(double currentProgress) {
+		publish(CHANGED_CURRENT, currentProgress, 0, null);
+	}
+
+	@Override
+	public void progressCompleted() {
+		publish(COMPLETED, 0, 0, null);
+	}
+
+	@Override
+	public void progressStopped(Exception exception) {
+		publish(STOPPED, 0, 0, exception);
+	}
+
+	/**
+	 * Publish an event for the listeners. Serialized, so that the ring has a
+	 * single writer.
+	 */
+	private synchronized void publish(int type, double current, double max, Exception exception) {
+
+		boolean progress = type == CHANGED || type == CHANGED_CURRENT;
+		long version = 0;
+
+		if (progress) {
+
+			version = ++this.progressVersion;
+
+			// keep the latest progress for the listeners which caught up
+			this.latestLock = this.latestLock + 1;
+			this.latest.type = type;
+			this.latest.current = current;
+			this.latest.max = max;
+			this.latest.version = version;
+			this.latestLock = this.latestLock + 1;
+
+			// no space, the listeners will take it from the latest progress
+			if (this.policy == OverflowPolicy.COALESCE && isFull()) {
+				this.coalesced = true;
+				signalReaders();
+				return;
+			}
+		} else if (this.coalesced) {
+
+			// the coalesced progress must be received before this event
+			append(this.latest.type, this.latest.current, this.latest.max, null, this.latest.version);
+		}
+
+		this.coalesced = false;
+
+		append(type, current, max, exception, version);
+
+		signalReaders();
+	}
+
+	/**
+	 * Write an event in the next slot of the ring
+	 */
+	private void append(int type, double current, double max, Exception exception, long version) {
+
+		if (this.policy != OverflowPolicy.DROP_OLDEST)
+			awaitSpace();
+
+		long seq = this.published;
+		Event event = this.ring[(int) seq & this.mask];
+
+		// mark the slot as being written, for the listeners reading it
+		event.seq = -1;
+		event.type = type;
+		event.current = current;
+		event.max = max;
+		event.exception = exception;
+		event.version = version;
+		event.seq = seq;
+
+		this.published = seq + 1;
+	}
+
+	/**
+	 * Check if the slowest listener did not consume the oldest event of the ring
+	 *
+	 * @return
+	 */
+	private boolean isFull() {
+
+		long published = this.published;
+
+		for (Reader reader : this.readers) {
+			if (published - reader.cursor >= this.ring.length)
+				return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Wait until there is space in the ring for a new event
+	 */
+	private void awaitSpace() {
+		while (isFull() && !this.closed)
+			LockSupport.parkNanos(this, BLOCK_WAIT_NANOS);
+	}
+
+	/**
+	 * Wake up the listeners waiting for events
+	 */
+	private void signalReaders() {
+		for (Reader reader : this.readers) {
+			if (reader.waiting)
+				LockSupport.unpark(reader.thread);
+		}
+	}
+
+	/**
+	 * Slot of the ring. The fields are volatile since the slot can be overwritten
+	 * while a listener reads it: the listener checks the sequence before and
+	 * after reading the other fields.
+	 */
+	private static class Event {
+		private volatile long seq = -1;
+		private volatile int type;
+		private volatile double current;
+		private volatile double max;
+		private volatile Exception exception;
+		private volatile long version; // version of the progress, 0 for other events
+	}
+
+	/**
+	 * Listener which consumes the events of the ring in its own thread
+	 */
+	private class Reader implements Runnable {
+
+		private ProgressListener listener;
+		private Thread thread;
+		private volatile long cursor; // next event to consume
+		private volatile boolean waiting;
+		private long delivered; // version of the last progress received
+		private long latestSeen; // lock of the latest progress last checked
+
+		public Reader(ProgressListener listener, long cursor) {
+			this.listener = listener;
+			this.cursor = cursor;
+			this.latestSeen = -1;
+			this.thread = new Thread(this, "progress-listener-" + THREAD_COUNT.incrementAndGet());
+			this.thread.setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+
+			ProgressEventPipeline pipeline = ProgressEventPipeline.this;
+
+			while (!pipeline.closed) {
+
+				long published = pipeline.published;
+
+				if (this.cursor < published) {
+					consume(published);
+					continue;
+				}
+
+				// caught up, receive the coalesced progress if any
+				if (consumeLatest())
+					continue;
+
+				this.waiting = true;
+
+				if (this.cursor == pipeline.published && this.latestSeen == pipeline.latestLock && !pipeline.closed)
+					LockSupport.park(this);
+
+				this.waiting = false;
+			}
+		}
+
+		/**
+		 * Consume the next event of the ring
+		 *
+		 * @param published
+		 */
+		private void consume(long published) {
+
+			long seq = this.cursor;
+
+			// the oldest events were overwritten
+			if (published - seq > ProgressEventPipeline.this.ring.length) {
+
+				long skipped = published - ProgressEventPipeline.this.ring.length - seq;
+				ProgressEventPipeline.this.dropped.addAndGet(skipped);
+
+				seq = seq + skipped;
+			}
+
+			Event event = ProgressEventPipeline.this.ring[(int) seq & ProgressEventPipeline.this.mask];
+
+			long before = event.seq;
+			int type = event.type;
+			double current = event.current;
+			double max = event.max;
+			Exception exception = event.exception;
+			long version = event.version;
+			long after = event.seq;
+
+			this.cursor = seq + 1;
+
+			// overwritten while reading
+			if (before != seq || after != seq) {
+				ProgressEventPipeline.this.dropped.incrementAndGet();
+				return;
+			}
+
+			// a newer progress was already received
+			if (version != 0) {
+
+				if (version <= this.delivered)
+					return;
+
+				this.delivered = version;
+			}
+
+			deliver(type, current, max, exception);
+		}
+
+		/**
+		 * Receive the latest progress if newer than the last received
+		 *
+		 * @return true if something was read
+		 */
+		private boolean consumeLatest() {
+
+			ProgressEventPipeline pipeline = ProgressEventPipeline.this;
+
+			long before = pipeline.latestLock;
+
+			// being written
+			if ((before & 1) != 0)
+				return true;
+
+			int type = pipeline.latest.type;
+			double current = pipeline.latest.current;
+			double max = pipeline.latest.max;
+			long version = pipeline.latest.version;
+
+			if (pipeline.latestLock != before)
+				return true;
+
+			// events published in the meantime come before this progress
+			if (this.cursor != pipeline.published)
+				return true;
+
+			this.latestSeen = before;
+
+			if (version <= this.delivered)
+				return false;
+
+			this.delivered = version;
+
+			deliver(type, current, max, null);
+
+			return true;
+		}
+
+		private void deliver(int type, double current, double max, Exception exception) {
+
+			try {
+				switch (type) {
+				case CHANGED:
+					this.listener.progressChanged(current, max);
+					break;
+				case CHANGED_CURRENT:
+					this.listener.progressChanged(current);
+					break;
+				case COMPLETED:
+					this.listener.progressCompleted();
+					break;
+				case STOPPED:
+					this.listener.progressStopped(exception);
+					break;
+				default:
+					break;
+				}
+			} catch (RuntimeException e) {
+				LOGGER.error("Progress listener failed", e);
+			}
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package progress_bar;
+
+/**
+ * Flight recorder events of the library. This version does nothing, since the
+ * flight recorder api is available only from Java 11: on Java 11 and later the
+ * jar provides a version which records the events (see the
+ * src/main/java11 folder). The methods are called in the hot paths, the
+ * events begun while the recorder is off are null.
+ */
+class ProgressEvents {
+
+	private ProgressEvents() {}
+
+	/**
+	 * Begin the event of the execution of a step
+	 *
+	 * @return the event, to end with {@link #endStep(Object, ProgressStep, boolean)}
+	 */
+	public static Object beginStep() {
+		return null;
+	}
+
+	/**
+	 * @param event     the event, null if not recorded
+	 * @param step
+	 * @param completed false if the step failed or was cancelled
+	 */
+	public static void endStep(Object event, ProgressStep step, boolean completed) {}
+
+	/**
+	 * Begin the event of a run of a list
+	 *
+	 * @return the event, to end with
+	 *         {@link #endListRun(Object, ProgressList, boolean)}
+	 */
+	public static Object beginListRun() {
+		return null;
+	}
+
+	/**
+	 * @param event     the event, null if not recorded
+	 * @param list
+	 * @param cancelled
+	 */
+	public static void endListRun(Object event, ProgressList list, boolean cancelled) {}
+
+	/**
+	 * Check if the refreshes of the bars are recorded, to count the
+	 * requests coalesced in each refresh only when needed
+	 *
+	 * @return
+	 */
+	public static boolean isRefreshEnabled() {
+		return false;
+	}
+
+	/**
+	 * Begin the event of the refresh of a bar, in the ui thread
+	 *
+	 * @return the event, to end with {@link #endRefresh(Object, int, int)}
+	 */
+	public static Object beginRefresh() {
+		return null;
+	}
+
+	/**
+	 * @param event     the event, null if not recorded
+	 * @param value     selection shown by the bar
+	 * @param coalesced requests of refresh merged in this one
+	 */
+	public static void endRefresh(Object event, int value, int coalesced) {}
+
+	/**
+	 * Begin the event of the notification of the listeners
+	 *
+	 * @return the event, to end with {@link #endDispatch(Object, Object, int)}
+	 */
+	public static Object beginDispatch() {
+		return null;
+	}
+
+	/**
+	 * @param event     the event, null if not recorded
+	 * @param source    the progress which notified its listeners
+	 * @param listeners number of listeners notified
+	 */
+	public static void endDispatch(Object event, Object source, int listeners) {}
+}
@@ -0,0 +1,405 @@
+package progress_bar;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Executor which counts the tasks it executes in a {@link TaskTracker}. The
+ * tasks are executed by another executor, in its threads: each task is only
+ * wrapped in a small object which updates the counters when it starts and
+ * finishes, so that submitting a task costs about the same as with the other
+ * executor.
+ *
+ * <pre>
+ * ProgressExecutorService executor = new ProgressExecutorService(Executors.newFixedThreadPool(4),
+ * 		bar.getModel());
+ * for (File file : files)
+ * 	executor.supplyAsync(() -&gt; importFile(file), table.addRow(file.getName()).getProgress());
+ * </pre>
+ *
+ * A task can have its own progress, which is filled when the task is done and
+ * stopped when it fails. If the token of the progress is cancelled, the task
+ * is cancelled too (interrupting it if it is running).
+ */
+public class ProgressExecutorService extends AbstractExecutorService {
+
+	private static final int QUEUED = 0;
+	private static final int RUNNING = 1;
+	private static final int FINISHED = 2;
+
+	@SuppressWarnings("rawtypes")
+	private static final AtomicIntegerFieldUpdater<TrackedTask> PHASE = AtomicIntegerFieldUpdater
+			.newUpdater(TrackedTask.class, "phase");
+
+	private ExecutorService delegate;
+	private TaskTracker tracker;
+
+	/**
+	 * Track the tasks of an executor
+	 *
+	 * @param delegate executor which executes the tasks
+	 */
+	public ProgressExecutorService(ExecutorService delegate) {
+		this(delegate, new TaskTracker());
+	}
+
+	/**
+	 * Track the tasks of an executor, showing the percentage of finished tasks
+	 *
+	 * @param delegate executor which executes the tasks
+	 * @param overall  progress of all the tasks, e.g. the model of a bar
+	 */
+	public ProgressExecutorService(ExecutorService delegate, ProgressModel overall) {
+		this(delegate, new TaskTracker(overall));
+	}
+
+	/**
+	 * Track the tasks of an executor
+	 *
+	 * @param delegate executor which executes the tasks
+	 * @param tracker  tracker of the tasks, it can be shared with other executors
+	 */
+	public ProgressExecutorService(ExecutorService delegate, TaskTracker tracker) {
+		this.delegate = delegate;
+		this.tracker = tracker;
+	}
+
+	/**
+	 * Submit a task which has its own progress
+	 *
+	 * @param task
+	 * @param progress progress of the task, e.g. the progress of a row
+	 * @return
+	 */
+	public <T> Future<T> submit(Callable<T> task, IProgress progress) {
+		TrackedTask<T> tracked = new TrackedTask<>(this.tracker, task, progress, null);
+		execute(tracked);
+		return tracked;
+	}
+
+	/**
+	 * Submit a task which has its own progress
+	 *
+	 * @param task
+	 * @param progress progress of the task, e.g. the progress of a row
+	 * @return
+	 */
+	public Future<?> submit(Runnable task, IProgress progress) {
+		return submit(toCallable(task), progress);
+	}
+
+	/**
+	 * Execute a task in this executor and get a future of its result. Unlike
+	 * {@link CompletableFuture#supplyAsync(Supplier, java.util.concurrent.Executor)},
+	 * the exceptions of the task are counted as failures, and cancelling the
+	 * future cancels the task (interrupting it if it is running).
+	 *
+	 * @param task
+	 * @param progress progress of the task, null for none
+	 * @return
+	 */
+	public <T> CompletableFuture<T> supplyAsync(final Supplier<T> task, IProgress progress) {
+
+		final CompletableFuture<T> future = new CompletableFuture<>();
+
+		final TrackedTask<T> tracked = new TrackedTask<>(this.tracker, new Callable<T>() {
+			@Override
+			public T call() throws Exception {
+				return task.get();
+			}
+		}, progress, future);
+
+		execute(tracked);
+
+		// the task is not needed anymore
+		future.whenComplete(new BiConsumer<T, Throwable>() {
+			@Override
+			public void accept(T result, Throwable failure) {
+				if (future.isCancelled())
+					tracked.cancel(true);
+			}
+		});
+
+		return future;
+	}
+
+	/**
+	 * Execute a task in this executor and get a future completed when it is
+	 * finished, see {@link #supplyAsync(Supplier, IProgress)}
+	 *
+	 * @param task
+	 * @param progress progress of the task, null for none
+	 * @return
+	 */
+	public CompletableFuture<Void> runAsync(final Runnable task, IProgress progress) {
+		return supplyAsync(new Supplier<Void>() {
+			@Override
+			public Void get() {
+				task.run();
+				return null;
+			}
+		}, progress);
+	}
+
+	@Override
+	protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+		return new TrackedTask<>(this.tracker, callable, null, null);
+	}
+
+	@Override
+	protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+		return new TrackedTask<>(this.tracker, Executors.callable(runnable, value), null, null);
+	}
+
+	@Override
+	public void execute(Runnable command) {
+
+		Tracked tracked;
+
+		if (command instanceof Tracked)
+			tracked = (Tracked) command;
+		else
+			tracked = new TrackedCommand(this.tracker, command);
+
+		this.tracker.submitted();
+		tracked.bind();
+
+		try {
+			this.delegate.execute((Runnable) tracked);
+		} catch (RejectedExecutionException e) {
+			if (tracked.reject())
+				this.tracker.rejected();
+			throw e;
+		}
+	}
+
+	@Override
+	public void shutdown() {
+		this.delegate.shutdown();
+	}
+
+	/**
+	 * Stop the executor. The tasks which were not started are counted as
+	 * failed, since they will never be executed.
+	 */
+	@Override
+	public List<Runnable> shutdownNow() {
+
+		List<Runnable> tasks = this.delegate.shutdownNow();
+
+		for (Runnable task : tasks) {
+			if (task instanceof Tracked)
+				((Tracked) task).discard();
+		}
+
+		return tasks;
+	}
+
+	@Override
+	public boolean isShutdown() {
+		return this.delegate.isShutdown();
+	}
+
+	@Override
+	public boolean isTerminated() {
+		return this.delegate.isTerminated();
+	}
+
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return this.delegate.awaitTermination(timeout, unit);
+	}
+
+	public TaskTracker getTracker() {
+		return this.tracker;
+	}
+
+	private static Callable<Void> toCallable(Runnable task) {
+		return Executors.callable(task, null);
+	}
+
+	/**
+	 * Task wrapped by the executor
+	 */
+	private interface Tracked {
+
+		/**
+		 * Called when the task is submitted
+		 */
+		public void bind();
+
+		/**
+		 * Called when the task is rejected by the executor
+		 *
+		 * @return true if the task must not be counted anymore
+		 */
+		public boolean reject();
+
+		/**
+		 * Called when the task will never be executed
+		 */
+		public void discard();
+	}
+
+	/**
+	 * Task submitted with a future. The counters are updated in
+	 * {@link #done()}, which is called once whether the task is done, failed or
+	 * cancelled (also before starting).
+	 */
+	private static class TrackedTask<T> extends FutureTask<T> implements Tracked {
+
+		private TaskTracker tracker;
+		private IProgress progress;
+		private CompletableFuture<T> future;
+		private Runnable cancel;
+		volatile int phase; // accessed by PHASE
+		private T result;
+		private Throwable failure;
+
+		public TrackedTask(TaskTracker tracker, Callable<T> callable, IProgress progress,
+				CompletableFuture<T> future) {
+			super(callable);
+			this.tracker = tracker;
+			this.progress = progress;
+			this.future = future;
+		}
+
+		@Override
+		public void bind() {
+
+			if (this.progress == null)
+				return;
+
+			// cancel the task with the process
+			this.cancel = new Runnable() {
+				@Override
+				public void run() {
+					cancel(true);
+				}
+			};
+
+			this.progress.getCancellationToken().onCancel(this.cancel);
+		}
+
+		@Override
+		public boolean reject() {
+
+			unbind();
+
+			return PHASE.compareAndSet(this, QUEUED, FINISHED);
+		}
+
+		@Override
+		public void discard() {
+			cancel(false);
+		}
+
+		@Override
+		public void run() {
+
+			if (!PHASE.compareAndSet(this, QUEUED, RUNNING))
+				return;
+
+			this.tracker.started();
+
+			super.run();
+		}
+
+		@Override
+		protected void set(T result) {
+			this.result = result;
+			super.set(result);
+		}
+
+		@Override
+		protected void setException(Throwable failure) {
+			this.failure = failure;
+			super.setException(failure);
+		}
+
+		@Override
+		protected void done() {
+
+			int previous = PHASE.getAndSet(this, FINISHED);
+
+			// rejected by the executor
+			if (previous == FINISHED)
+				return;
+
+			unbind();
+
+			Throwable failure = isCancelled() ? new CancellationException("Cancelled") : this.failure;
+
+			this.tracker.finished(previous == RUNNING, failure, this.progress);
+
+			if (this.future == null)
+				return;
+
+			if (failure == null)
+				this.future.complete(this.result);
+			else
+				this.future.completeExceptionally(failure);
+		}
+
+		private void unbind() {
+			if (this.cancel != null)
+				this.progress.getCancellationToken().removeOnCancel(this.cancel);
+		}
+	}
+
+	/**
+	 * Task executed without a future. Its exceptions are counted and then
+	 * thrown again to the thread, as with the other executor.
+	 */
+	private static class TrackedCommand implements Runnable, Tracked {
+
+		private TaskTracker tracker;
+		private Runnable command;
+
+		public TrackedCommand(TaskTracker tracker, Runnable command) {
+			this.tracker = tracker;
+			this.command = command;
+		}
+
+		@Override
+		public void bind() {}
+
+		@Override
+		public boolean reject() {
+			return true;
+		}
+
+		@Override
+		public void discard() {
+			this.tracker.finished(false, new CancellationException("Not executed"), null);
+		}
+
+		@Override
+		public void run() {
+
+			this.tracker.started();
+
+			try {
+				this.command.run();
+			} catch (RuntimeException | Error e) {
+				this.tracker.finished(true, e, null);
+				throw e;
+			}
+
+			this.tracker.finished(true, null, null);
+		}
+	}
+}
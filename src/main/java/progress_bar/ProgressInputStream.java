@@ -0,0 +1,117 @@
+package progress_bar;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream which reports the bytes read to a progress, in batches (see
+ * {@link ByteProgress}). The progress is completed when the end of the stream
+ * is reached:
+ *
+ * <pre>
+ * try (InputStream input = ProgressInputStream.open(file, bar, 100)) {
+ * 	parser.parse(input);
+ * }
+ * </pre>
+ *
+ * Reading is never slowed down: the stream only counts the bytes returned by
+ * the wrapped stream. Wrap the buffered stream (not the opposite) so that the
+ * bytes are counted once per buffer fill. If the cancellation of the progress
+ * is requested, the next batch throws a
+ * {@link java.util.concurrent.CancellationException}. Mark and reset are not
+ * supported, since the progress cannot go back: wrap this stream in a
+ * buffered one if they are needed.
+ */
+public class ProgressInputStream extends FilterInputStream {
+
+	private ByteProgress bytes;
+
+	/**
+	 * Wrap a stream
+	 *
+	 * @param in       the stream to read
+	 * @param size     total bytes of the stream
+	 * @param progress progress where the bytes are reported
+	 * @param work     progress corresponding to the whole stream
+	 */
+	public ProgressInputStream(InputStream in, long size, IProgress progress, double work) {
+		super(in);
+		this.bytes = new ByteProgress(progress, size, work);
+	}
+
+	/**
+	 * Open a file reporting the bytes read
+	 *
+	 * @param file
+	 * @param progress progress where the bytes are reported
+	 * @param work     progress corresponding to the whole file
+	 * @return
+	 * @throws FileNotFoundException
+	 */
+	public static ProgressInputStream open(File file, IProgress progress, double work)
+			throws FileNotFoundException {
+		return new ProgressInputStream(new FileInputStream(file), file.length(), progress, work);
+	}
+
+	@Override
+	public int read() throws IOException {
+
+		int read = super.read();
+
+		if (read < 0)
+			this.bytes.finish();
+		else
+			this.bytes.add(1);
+
+		return read;
+	}
+
+	@Override
+	public int read(byte[] buffer, int offset, int length) throws IOException {
+
+		int read = super.read(buffer, offset, length);
+
+		if (read < 0)
+			this.bytes.finish();
+		else
+			this.bytes.add(read);
+
+		return read;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+
+		long skipped = super.skip(n);
+
+		this.bytes.add(skipped);
+
+		return skipped;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	@Override
+	public synchronized void mark(int readlimit) {}
+
+	@Override
+	public synchronized void reset() throws IOException {
+		throw new IOException("Mark and reset are not supported");
+	}
+
+	/**
+	 * Get the bytes read
+	 *
+	 * @return
+	 */
+	public long getPosition() {
+		return this.bytes.getPosition();
+	}
+}
@@ -0,0 +1,18 @@
+package progress_bar;
+
+/**
+ * Job executed by a {@link ProgressJobManager}, which reports its progress in
+ * the row of the job
+ */
+public interface ProgressJob {
+
+	/**
+	 * Execute the job. The job is completed when the method returns, if the
+	 * progress was not filled.
+	 *
+	 * @param progress progress of the row of the job. The job should check its
+	 *                 cancellation token regularly.
+	 * @throws Exception the job is shown as aborted
+	 */
+	public void run(IProgress progress) throws Exception;
+}
@@ -0,0 +1,403 @@
+package progress_bar;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import progress_bar.TableMultipleProgress.TableRow;
+
+/**
+ * Executes the jobs shown in a {@link FormMultipleProgress}, at most a given
+ * number at the same time. Each job gets a row, which is waiting until the job
+ * starts, then on going, and finally completed or aborted:
+ *
+ * <pre>
+ * ProgressJobManager manager = new ProgressJobManager(form, 4);
+ * for (Catalogue catalogue : catalogues)
+ * 	manager.submit(catalogue.getCode(), catalogue.getPriority(), progress -&gt; export(catalogue, progress));
+ * form.open();
+ * </pre>
+ *
+ * The waiting jobs are started by priority, the highest first, and in the order
+ * they were submitted with the same priority. The jobs are executed in a thread
+ * pool with one thread for each job which can run at the same time, or in a
+ * {@link ForkJoinPool} if work stealing is enabled: the parallel streams and
+ * the fork join tasks of the jobs are then executed by the same threads, which
+ * steal the work of the other jobs when they are idle.
+ *
+ * A job is cancelled with its row (see {@link TableRow#cancel()}), also before
+ * it starts, and all the jobs are cancelled when the form is closed before
+ * {@link FormMultipleProgress#done()} is called.
+ */
+public class ProgressJobManager {
+
+	private static final Logger LOGGER = LogManager.getLogger(ProgressJobManager.class);
+
+	private FormMultipleProgress form;
+	private ExecutorService executor;
+	private PriorityBlockingQueue<Job> waiting;
+	private volatile int maxConcurrency;
+	private AtomicInteger workers; // draining the waiting jobs
+	private AtomicLong sequence; // order of submission
+	private TaskTracker tracker;
+	private boolean interruptible;
+
+	/**
+	 * Create a manager which runs a job for each processor
+	 *
+	 * @param form form where the jobs are shown
+	 */
+	public ProgressJobManager(FormMultipleProgress form) {
+		this(form, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Create a manager
+	 *
+	 * @param form           form where the jobs are shown
+	 * @param maxConcurrency maximum number of jobs running at the same time
+	 */
+	public ProgressJobManager(FormMultipleProgress form, int maxConcurrency) {
+		this(form, maxConcurrency, false);
+	}
+
+	/**
+	 * Create a manager
+	 *
+	 * @param form           form where the jobs are shown
+	 * @param maxConcurrency maximum number of jobs running at the same time
+	 * @param workStealing   true to execute the jobs in a {@link ForkJoinPool}
+	 */
+	public ProgressJobManager(FormMultipleProgress form, int maxConcurrency, boolean workStealing) {
+
+		if (maxConcurrency < 1)
+			throw new IllegalArgumentException("The maximum concurrency must be positive: " + maxConcurrency);
+
+		this.form = form;
+		this.maxConcurrency = maxConcurrency;
+		this.waiting = new PriorityBlockingQueue<>();
+		this.workers = new AtomicInteger();
+		this.sequence = new AtomicLong();
+		this.tracker = new TaskTracker();
+
+		if (workStealing) {
+			this.executor = new ForkJoinPool(maxConcurrency);
+		} else {
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 60, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+						private AtomicInteger count = new AtomicInteger();
+
+						@Override
+						public Thread newThread(Runnable runnable) {
+							Thread thread = new Thread(runnable, "progress-job-" + this.count.incrementAndGet());
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+
+			// no idle threads when there is nothing to do
+			pool.allowCoreThreadTimeOut(true);
+			this.executor = pool;
+		}
+	}
+
+	/**
+	 * Add a row for the job and execute it when possible. Call it in the ui
+	 * thread, as {@link FormMultipleProgress#addRow(String)}.
+	 *
+	 * @param taskName name shown in the row
+	 * @param job
+	 * @return the row of the job
+	 */
+	public TableRow submit(String taskName, ProgressJob job) {
+		return submit(taskName, 0, job);
+	}
+
+	/**
+	 * Add a row for the job and execute it when possible, before the waiting jobs
+	 * with a lower priority. Call it in the ui thread, as
+	 * {@link FormMultipleProgress#addRow(String)}.
+	 *
+	 * @param taskName name shown in the row
+	 * @param priority priority of the job, the highest is executed first
+	 * @param job
+	 * @return the row of the job
+	 */
+	public TableRow submit(String taskName, int priority, ProgressJob job) {
+
+		TableRow row = this.form.addRow(taskName);
+
+		this.tracker.submitted();
+		this.waiting.add(new Job(job, row, priority, this.sequence.getAndIncrement()));
+
+		if (reserveWorker())
+			startWorker();
+
+		return row;
+	}
+
+	/**
+	 * Change the maximum number of jobs running at the same time. The running
+	 * jobs are not stopped if it is lowered, new jobs are started if it is
+	 * raised. With work stealing the parallelism of the {@link ForkJoinPool}
+	 * cannot be changed: raising it above the value given to the constructor
+	 * starts more jobs, but they wait for a free thread of the pool.
+	 *
+	 * @param maxConcurrency
+	 */
+	public void setMaxConcurrency(int maxConcurrency) {
+
+		if (maxConcurrency < 1)
+			throw new IllegalArgumentException("The maximum concurrency must be positive: " + maxConcurrency);
+
+		this.maxConcurrency = maxConcurrency;
+
+		if (this.executor instanceof ThreadPoolExecutor) {
+
+			ThreadPoolExecutor pool = (ThreadPoolExecutor) this.executor;
+
+			// the maximum size cannot be lower than the core size
+			if (maxConcurrency > pool.getMaximumPoolSize()) {
+				pool.setMaximumPoolSize(maxConcurrency);
+				pool.setCorePoolSize(maxConcurrency);
+			} else {
+				pool.setCorePoolSize(maxConcurrency);
+				pool.setMaximumPoolSize(maxConcurrency);
+			}
+		}
+
+		while (!this.waiting.isEmpty() && reserveWorker())
+			startWorker();
+	}
+
+	public int getMaxConcurrency() {
+		return this.maxConcurrency;
+	}
+
+	/**
+	 * Interrupt the thread of a running job when it is cancelled, to stop also
+	 * blocking operations. False by default.
+	 *
+	 * @param interruptible
+	 */
+	public void setInterruptible(boolean interruptible) {
+		this.interruptible = interruptible;
+	}
+
+	/**
+	 * Get the counters of the jobs. The jobs waiting to start are counted as
+	 * queued.
+	 *
+	 * @return
+	 */
+	public TaskTracker getTracker() {
+		return this.tracker;
+	}
+
+	/**
+	 * Cancel all the jobs, the waiting ones will not be started
+	 */
+	public void cancel() {
+		this.form.cancel();
+	}
+
+	/**
+	 * Stop the threads when the submitted jobs are finished. No job can be
+	 * submitted anymore.
+	 */
+	public void shutdown() {
+		this.executor.shutdown();
+	}
+
+	/**
+	 * Wait until the jobs are finished, after {@link #shutdown()}. Do not call it
+	 * in the ui thread, which updates the rows.
+	 *
+	 * @param timeout
+	 * @param unit
+	 * @return false if the timeout elapsed before
+	 * @throws InterruptedException
+	 */
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return this.executor.awaitTermination(timeout, unit);
+	}
+
+	/**
+	 * Reserve a worker, if less than the maximum are running
+	 *
+	 * @return true if reserved
+	 */
+	private boolean reserveWorker() {
+
+		while (true) {
+
+			int workers = this.workers.get();
+
+			if (workers >= this.maxConcurrency)
+				return false;
+
+			if (this.workers.compareAndSet(workers, workers + 1))
+				return true;
+		}
+	}
+
+	private void startWorker() {
+		this.executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				work();
+			}
+		});
+	}
+
+	/**
+	 * Execute the waiting jobs, until there are none or the maximum
+	 * concurrency was lowered
+	 */
+	private void work() {
+
+		boolean reserved = true;
+
+		try {
+
+			while (true) {
+
+				Job job = this.workers.get() > this.maxConcurrency ? null : this.waiting.poll();
+
+				if (job == null) {
+
+					this.workers.decrementAndGet();
+					reserved = false;
+
+					// a job submitted in the meantime, whose worker
+					// was not started since this one was still running
+					if (this.waiting.isEmpty() || !reserveWorker())
+						return;
+
+					reserved = true;
+					continue;
+				}
+
+				execute(job);
+			}
+
+		} finally {
+
+			// an error stopped the worker, another one executes the waiting jobs
+			if (reserved) {
+
+				this.workers.decrementAndGet();
+
+				if (!this.waiting.isEmpty() && reserveWorker())
+					startWorker();
+			}
+		}
+	}
+
+	/**
+	 * Execute a job, updating its row. The row is aborted if the job throws
+	 * anything, errors are then thrown again to the worker.
+	 *
+	 * @param job
+	 */
+	private void execute(Job job) {
+
+		IProgress progress = job.row.getProgress();
+		CancellationToken token = progress.getCancellationToken();
+
+		// the row is already shown as aborted
+		if (token.isCancelled()) {
+			this.tracker.finished(false, new CancellationException("Cancelled"), null);
+			return;
+		}
+
+		this.tracker.started();
+
+		ThreadInterrupter interrupt = null;
+
+		try {
+
+			job.row.setStatus(TableRow.ONGOING);
+
+			if (this.interruptible) {
+				interrupt = new ThreadInterrupter();
+				token.onCancel(interrupt);
+			}
+
+			job.job.run(progress);
+
+			token.throwIfCancelled();
+
+			this.tracker.finished(true, null, progress);
+
+		} catch (Exception e) {
+
+			if (token.isCancelled()) {
+				LOGGER.info("Job " + job.row.getName() + " cancelled");
+				this.tracker.finished(true, e, null);
+			} else {
+				LOGGER.error("Job " + job.row.getName() + " failed", e);
+				this.tracker.finished(true, e, progress);
+			}
+
+		} catch (Throwable e) {
+
+			LOGGER.error("Job " + job.row.getName() + " failed", e);
+			this.tracker.finished(true, e, progress);
+
+			if (e instanceof Error)
+				throw (Error) e;
+
+		} finally {
+
+			if (interrupt != null) {
+
+				token.removeOnCancel(interrupt);
+
+				// do not leave the interruption to the next job
+				interrupt.close();
+			}
+		}
+	}
+
+	/**
+	 * Job waiting to be executed
+	 */
+	private static class Job implements Comparable<Job> {
+
+		private ProgressJob job;
+		private TableRow row;
+		private int priority;
+		private long sequence;
+
+		public Job(ProgressJob job, TableRow row, int priority, long sequence) {
+			this.job = job;
+			this.row = row;
+			this.priority = priority;
+			this.sequence = sequence;
+		}
+
+		@Override
+		public int compareTo(Job other) {
+
+			// highest priority first
+			int compare = Integer.compare(other.priority, this.priority);
+
+			if (compare != 0)
+				return compare;
+
+			return Long.compare(this.sequence, other.sequence);
+		}
+	}
+}
@@ -2,7 +2,19 @@ package progress_bar;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.ListIterator;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -19,23 +31,81 @@ import org.apache.logging.log4j.Logger;
  * each time the listener is invoked, without having to implement
  * the progress bar into the core process that executes the non-user
  * interface code (modularity improves!).
+ * 
+ * If an executor is set with {@link #setExecutor(Executor)}, the steps
+ * are instead executed in parallel, each one as soon as all the steps
+ * it depends on are completed (see {@link ProgressStep#dependsOn(String...)}).
+ * The steps which depend on a failed step are not executed and are
+ * notified as failed.
+ * 
+ * If a {@link StepHistory} is set with {@link #setHistory(StepHistory)},
+ * each step gets a share of the progress proportional to how long
+ * it took in the past runs, otherwise all the steps get the same share.
+ * 
+ * If a {@link StepCheckpoint} is set with {@link #setCheckpoint(StepCheckpoint)},
+ * a run which failed can be resumed: the steps completed in the previous
+ * runs are not executed again, but they are notified to the listeners
+ * as completed.
+ * 
+ * A run can be stopped with {@link #cancel()}: each step receives a
+ * {@link CancellationToken} (see {@link ProgressStep#getCancellationToken()})
+ * which is cancelled together with the run.
+ * 
+ * The steps which hang can be detected with a {@link ProgressWatchdog}
+ * (see {@link #setWatchdog(ProgressWatchdog)}), which also enforces
+ * the timeouts of the steps.
  * @author avonva
  *
  */
-public class ProgressList extends ArrayList<ProgressStep> {
+public class ProgressList extends ArrayList<ProgressStep> implements ProgressListMXBean {
 	
 	private static final Logger LOGGER = LogManager.getLogger(ProgressList.class);
 	
 	private static final long serialVersionUID = 1074566667820675565L;
+	
+	// minimum weight of a step, in milliseconds
+	private static final double MIN_WEIGHT = 1;
 
 	private int maxProgress;
 	private long time;
 
-	private Collection<ProgressStepListener> listeners;
+	private ListenerList<ProgressStepListener> listeners;
+	
+	// serializes the notifications, not used by the listener list so that
+	// listeners can be added or removed while one is being notified
+	// (an empty array since it can be serialized with the list)
+	private final Object[] dispatchLock = new Object[0];
+	private transient Executor executor;
+	private transient Executor listenerExecutor;
+	private transient StepHistory history;
+	private transient StepCheckpoint checkpoint;
+	private transient volatile CancellationToken cancellationToken;  // token of the current run
+	private boolean cancelOnFailure;
+	private boolean profiling;
+	private transient ProgressWatchdog watchdog;
+	private transient Map<ProgressStep, Double> shares;  // progress of each step in the current run
+	
+	// metrics of the current run
+	private Map<String, Long> stepTimes;
+	private Map<String, Long> stepCpuTimes;
+	private Map<String, Long> stepAllocatedBytes;
+	private volatile long wallTime;  // nanoseconds, sum of the steps
+	private volatile long cpuTime;  // nanoseconds, sum of the steps
+	private volatile long allocatedBytes;  // sum of the steps
+	private volatile int completedSteps;
+	private volatile double completedProgress;
+	private volatile double resumedProgress;  // progress of the steps completed in previous runs
+	private volatile double expectedTime;  // expected milliseconds of the run, -1 if unknown
+	private volatile String label;
+	private volatile long startTime;  // nano time of the start, 0 if not started
+	private volatile long endTime;  // nano time of the end, 0 if running
 	
 	public ProgressList( int maxProgress ) {
 		this.maxProgress = maxProgress;
-		this.listeners = new ArrayList<>();
+		this.listeners = new ListenerList<>( new ProgressStepListener[0] );
+		this.stepTimes = new ConcurrentHashMap<>();
+		this.stepCpuTimes = new ConcurrentHashMap<>();
+		this.stepAllocatedBytes = new ConcurrentHashMap<>();
 	}
 	
 
@@ -53,55 +123,695 @@ public class ProgressList extends ArrayList<ProgressStep> {
 		}
 		return null;
 	}
+	
+	/**
+	 * Set the executor used to run the steps in parallel. Steps
+	 * which do not depend on each other are executed concurrently.
+	 * {@link #start()} waits for the steps in the calling thread: do not
+	 * call it in a thread of the executor, since the executor could have
+	 * no thread left to run the steps, unless it is a {@link ForkJoinPool}
+	 * (which adds a thread while the list is waiting).
+	 * @param executor the executor (e.g. a ForkJoinPool) or null
+	 * to execute the steps one after another in the calling thread
+	 */
+	public void setExecutor ( Executor executor ) {
+		this.executor = executor;
+	}
 
+	/**
+	 * Set the history of the durations of the steps, used to weight
+	 * the progress of each step. The durations of the steps executed
+	 * are added to the history.
+	 * @param history the history, or null to give the same progress
+	 * to all the steps
+	 */
+	public void setHistory ( StepHistory history ) {
+		this.history = history;
+	}
+	
+	public StepHistory getHistory() {
+		return this.history;
+	}
+	
+	/**
+	 * Set the journal of the completed steps. The steps found in the
+	 * journal are skipped (their data is restored from the journal),
+	 * the steps completed are added to it. The journal is cleared
+	 * when all the steps of the list are completed.
+	 * @param checkpoint the journal, or null to execute all the steps
+	 */
+	public void setCheckpoint ( StepCheckpoint checkpoint ) {
+		this.checkpoint = checkpoint;
+	}
+	
+	public StepCheckpoint getCheckpoint() {
+		return this.checkpoint;
+	}
+	
+	/**
+	 * Cancel the whole run when a step fails, stopping also the steps
+	 * being executed in parallel. By default only the steps which
+	 * depend on the failed one are not executed.
+	 * @param cancelOnFailure
+	 */
+	public void setCancelOnFailure ( boolean cancelOnFailure ) {
+		this.cancelOnFailure = cancelOnFailure;
+	}
+	
+	/**
+	 * Set the watchdog which checks that the steps do not stall.
+	 * If not set, the steps with a timeout are watched by the
+	 * default watchdog (see {@link ProgressWatchdog#getDefault()}).
+	 * @param watchdog
+	 */
+	public void setWatchdog ( ProgressWatchdog watchdog ) {
+		this.watchdog = watchdog;
+	}
+	
+	public ProgressWatchdog getWatchdog() {
+		return this.watchdog;
+	}
+	
+	/**
+	 * Measure the cpu time and the allocations of each step executed,
+	 * see {@link ProgressStep#setProfiling(boolean)}. The measures
+	 * are summed in {@link #getCpuTime()} and {@link #getAllocatedBytes()}.
+	 * The setting of the steps is not changed.
+	 * @param profiling
+	 */
+	public void setProfiling ( boolean profiling ) {
+		this.profiling = profiling;
+	}
+	
+	public boolean isProfiling() {
+		return this.profiling;
+	}
+	
+	/**
+	 * Cancel the current run. The steps not started yet are not
+	 * executed and the tokens of the running steps are cancelled.
+	 * Can be called by any thread.
+	 */
+	public void cancel() {
+		
+		CancellationToken token = this.cancellationToken;
+		
+		if ( token != null )
+			token.cancel();
+	}
+	
+	/**
+	 * Get the token of the current (or last) run
+	 * @return the token, null if never started
+	 */
+	public CancellationToken getCancellationToken() {
+		return this.cancellationToken;
+	}
+	
 	/**
 	 * Start the execution of all the {@link ProgressStep} in the list.
+	 * If an executor was set, the steps are executed in parallel and
+	 * this method returns when all of them are finished. If the calling
+	 * thread is interrupted meanwhile, the run is cancelled and this method
+	 * returns when the steps stopped, with the interrupt flag set.
 	 */
 	public void start() {
 		
+		this.stepTimes.clear();
+		this.stepCpuTimes.clear();
+		this.stepAllocatedBytes.clear();
+		this.wallTime = 0;
+		this.cpuTime = 0;
+		this.allocatedBytes = 0;
+		this.completedSteps = 0;
+		this.completedProgress = 0;
+		this.resumedProgress = 0;
+		this.shares = computeShares();
+		this.cancellationToken = new CancellationToken();
+		this.endTime = 0;
+		this.startTime = System.nanoTime();
+		
+		Object event = ProgressEvents.beginListRun();
+		
+		try {
+			
+			if ( this.executor != null )
+				startParallel();
+			else
+				startSequential();
+			
+			// the next run starts from scratch
+			StepCheckpoint checkpoint = this.checkpoint;
+			if ( checkpoint != null && this.completedSteps == this.size() )
+				checkpoint.clear();
+		}
+		finally {
+			this.label = null;
+			this.endTime = System.nanoTime();
+			ProgressEvents.endListRun( event, this, this.cancellationToken.isCancelled() );
+		}
+	}
+	
+	/**
+	 * Compute the progress given by each step. The steps get a share
+	 * of the max progress proportional to their expected duration. The
+	 * steps without history weigh as the average of the others.
+	 * @return the progress by step
+	 */
+	private Map<ProgressStep, Double> computeShares() {
+		
+		Map<ProgressStep, Double> weights = new IdentityHashMap<>();
+		
+		StepHistory history = this.history;
+		double known = 0;
+		int knownCount = 0;
+		
+		for ( ProgressStep step : this ) {
+			
+			double time = history == null ? -1 : history.getExpectedTime( step.getCode() );
+			
+			if ( time >= 0 ) {
+				time = Math.max( MIN_WEIGHT, time );
+				known = known + time;
+				knownCount++;
+			}
+			
+			weights.put( step, time );
+		}
+		
+		this.expectedTime = knownCount == this.size() && knownCount > 0 ? known : -1;
+		
+		double unknown = knownCount > 0 ? known / knownCount : MIN_WEIGHT;
+		double total = known + unknown * ( weights.size() - knownCount );
+		
+		for ( Map.Entry<ProgressStep, Double> entry : weights.entrySet() ) {
+			
+			double weight = entry.getValue() < 0 ? unknown : entry.getValue();
+			
+			entry.setValue( this.maxProgress * weight / total );
+		}
+		
+		return weights;
+	}
+	
+	/**
+	 * Get the progress given by the step in the current run
+	 * @param step
+	 * @return
+	 */
+	private double getShare ( ProgressStep step ) {
+		
+		Double share = this.shares.get( step );
+		
+		// step added while running
+		if ( share == null )
+			return (double) this.maxProgress / this.size();
+		
+		return share;
+	}
+	
+	/**
+	 * Execute the steps one after another in the current
+	 * thread, stopping at the first failure
+	 */
+	private void startSequential() {
+		
 		// for each step (using iterator to support concurrent modification)
 		for ( ListIterator<ProgressStep> i = this.listIterator(); i.hasNext(); ) {
 			
 			ProgressStep step = i.next();
 			
 			// execute progress step code
+			if ( !execute( step ) )
+				break;
+		}
+	}
+	
+	/**
+	 * Execute all the steps in the executor, respecting their dependencies.
+	 * If a step fails, the steps which depend on it (also indirectly)
+	 * are not executed, while the independent ones are.
+	 */
+	private void startParallel() {
+		
+		// build the graph of the dependencies
+		Map<String, StepNode> nodes = new HashMap<>();
+		for ( ProgressStep step : this ) {
+			if ( nodes.put( step.getCode(), new StepNode( step ) ) != null )
+				throw new IllegalStateException( "Duplicated progress step code " + step.getCode() );
+		}
+		
+		for ( StepNode node : nodes.values() ) {
+			for ( String code : node.step.getDependencies() ) {
+				
+				StepNode dependency = nodes.get( code );
+				
+				if ( dependency == null )
+					throw new IllegalStateException( "The step " + node.step.getCode() 
+						+ " depends on the step " + code + " which is not in the list" );
+				
+				dependency.dependents.add( node );
+				node.pending.incrementAndGet();
+			}
+		}
+		
+		checkCycles( nodes.values() );
+		
+		CountDownLatch finished = new CountDownLatch( nodes.size() );
+		
+		for ( StepNode node : nodes.values() ) {
+			if ( node.pending.get() == 0 )
+				submit( node, finished );
+		}
+		
+		await( finished );
+	}
+	
+	/**
+	 * Wait until all the steps are finished. In a thread of a
+	 * {@link ForkJoinPool} the pool adds a thread while waiting,
+	 * so that the steps can run also if all its threads are busy.
+	 * If interrupted, the run is cancelled and the steps still
+	 * running are waited for.
+	 * @param finished
+	 */
+	private void await ( final CountDownLatch finished ) {
+		
+		ForkJoinPool.ManagedBlocker blocker = new ForkJoinPool.ManagedBlocker() {
+			
+			@Override
+			public boolean block() throws InterruptedException {
+				finished.await();
+				return true;
+			}
+			
+			@Override
+			public boolean isReleasable() {
+				return finished.getCount() == 0;
+			}
+		};
+		
+		boolean interrupted = false;
+		
+		while ( true ) {
+			
 			try {
+				ForkJoinPool.managedBlock( blocker );
+				break;
+			}
+			catch ( InterruptedException e ) {
 				
-				for ( ProgressStepListener listener : this.listeners )
-					listener.progressStepStarted( step );
+				if ( !interrupted ) {
+					LOGGER.warn("Interrupted while waiting for the progress steps, cancelling them");
+					this.cancellationToken.cancel();
+				}
 				
-				step.start();
-			} catch (Exception e) {
-				LOGGER.error("There was a problem going through the listener list", e);
-				e.printStackTrace();
+				interrupted = true;
+			}
+		}
+		
+		// the caller decides what to do with the interruption
+		if ( interrupted )
+			Thread.currentThread().interrupt();
+	}
+	
+	/**
+	 * Execute the step in the executor. When it is finished, the
+	 * steps that were waiting only for it are submitted as well
+	 * @param node
+	 * @param finished
+	 */
+	private void submit ( final StepNode node, final CountDownLatch finished ) {
+		
+		try {
+			this.executor.execute( new Runnable() {
+				@Override
+				public void run() {
+					
+					boolean completed = false;
+					Error error = null;
+					
+					try {
+						
+						// also a failing listener or an error fail the step
+						try {
+							completed = execute( node.step );
+						}
+						catch ( RuntimeException e ) {
+							LOGGER.error("Progress step " + node.step.getCode() + " failed", e);
+						}
+						catch ( Error e ) {
+							LOGGER.error("Progress step " + node.step.getCode() + " failed", e);
+							error = e;
+						}
+						
+						for ( StepNode dependent : node.dependents ) {
+							
+							if ( !completed )
+								cancel( dependent, finished );
+							else if ( dependent.pending.decrementAndGet() == 0 )
+								submit( dependent, finished );
+						}
+					}
+					finally {
+						// the list is waiting for all the steps
+						finished.countDown();
+					}
+					
+					if ( error != null )
+						throw error;
+				}
+			});
+		}
+		catch ( RuntimeException e ) {
+			
+			LOGGER.error("Cannot execute the progress step " + node.step.getCode(), e);
+			
+			notifyFailed( node.step );
+			
+			for ( StepNode dependent : node.dependents )
+				cancel( dependent, finished );
+			
+			finished.countDown();
+		}
+	}
+	
+	/**
+	 * Skip the step and all the steps which depend on it. The
+	 * listeners are notified that the skipped steps failed.
+	 * @param node
+	 * @param finished
+	 */
+	private void cancel ( StepNode node, CountDownLatch finished ) {
+		
+		// already cancelled by another failed dependency
+		if ( !node.cancelled.compareAndSet( false, true ) )
+			return;
+		
+		LOGGER.warn("Progress step " + node.step.getCode() + " skipped since one of its dependencies failed");
+		
+		// a failing listener must not stop skipping the other steps
+		try {
+			notifyFailed( node.step );
+		}
+		catch ( RuntimeException e ) {
+			LOGGER.error("Cannot notify that the progress step " + node.step.getCode() + " was skipped", e);
+		}
+		
+		for ( StepNode dependent : node.dependents )
+			cancel( dependent, finished );
+		
+		finished.countDown();
+	}
+	
+	/**
+	 * Check that the dependencies do not contain cycles,
+	 * otherwise the steps involved would never start
+	 * @param nodes
+	 */
+	private static void checkCycles ( Collection<StepNode> nodes ) {
+		
+		Map<StepNode, Integer> pending = new HashMap<>();
+		ArrayList<StepNode> ready = new ArrayList<>();
+		
+		for ( StepNode node : nodes ) {
+			pending.put( node, node.pending.get() );
+			if ( node.pending.get() == 0 )
+				ready.add( node );
+		}
+		
+		int visited = 0;
+		while ( !ready.isEmpty() ) {
+			
+			StepNode node = ready.remove( ready.size() - 1 );
+			visited++;
+			
+			for ( StepNode dependent : node.dependents ) {
+				int left = pending.get( dependent ) - 1;
+				pending.put( dependent, left );
+				if ( left == 0 )
+					ready.add( dependent );
+			}
+		}
+		
+		if ( visited != nodes.size() )
+			throw new IllegalStateException( "The dependencies of the progress steps contain a cycle" );
+	}
+	
+	/**
+	 * Execute a single step notifying the listeners
+	 * @param step
+	 * @return true if the step was completed, false if it failed
+	 */
+	private boolean execute ( ProgressStep step ) {
+		
+		StepCheckpoint checkpoint = this.checkpoint;
+		
+		// completed in a previous run
+		if ( checkpoint != null && checkpoint.isCompleted( step.getCode() ) ) {
+			resume( step, checkpoint.getData( step.getCode() ) );
+			return true;
+		}
+		
+		CancellationToken token = this.cancellationToken;
+		
+		// execute progress step code
+		try {
+			
+			this.label = step.getName();
+			
+			step.setCancellationToken( token.newChild() );
+			
+			notifyStarted( step );
+			
+			ProgressWatchdog watchdog = this.watchdog;
+			
+			if ( watchdog == null && step.getTimeout() > 0 )
+				watchdog = ProgressWatchdog.getDefault();
+			
+			ProgressWatchdog.Watch watch = watchdog == null ? null : watchdog.watch( step );
+			
+			try {
+				step.start( this.profiling || step.isProfiling() );
+			}
+			finally {
 				
-				for ( ProgressStepListener listener : this.listeners )
-					listener.failed( step );
+				if ( watch != null )
+					watchdog.unwatch( watch );
 				
-				break;
+				// the list does not need to cancel the step anymore
+				step.getCancellationToken().close();
 			}
+		} catch (Exception e) {
+			
+			// stopped on request (also by an interruption caused by the cancellation)
+			if ( e instanceof CancellationException || step.getCancellationToken().isCancelled() ) {
+				
+				LOGGER.info("Progress step " + step.getCode() + " cancelled");
+				
+				notifyFailed( step );
+				
+				return false;
+			}
+			
+			LOGGER.error("Progress step " + step.getCode() + " failed", e);
+			
+			notifyFailed( step );
+			
+			// stop also the other steps
+			if ( this.cancelOnFailure )
+				token.cancel();
+			
+			return false;
+		}
+		
+		double stepProgress = getShare( step );
+		
+		StepHistory history = this.history;
+		if ( history != null )
+			history.record( step.getCode(), step.getTime() );
+		
+		if ( checkpoint != null )
+			checkpoint.record( step.getCode(), step.getData() );
+		
+		synchronized ( this.dispatchLock ) {
 			
 			// accumulate time
 			this.time = this.time + step.getTime();
 			
-			double singleStepProgress = this.maxProgress / this.size();
+			this.stepTimes.put( step.getCode(), step.getTime() );
+			this.wallTime = this.wallTime + step.getWallTime();
+			
+			if ( step.getCpuTime() >= 0 ) {
+				this.stepCpuTimes.put( step.getCode(), step.getCpuTime() );
+				this.cpuTime = this.cpuTime + step.getCpuTime();
+			}
+			
+			if ( step.getAllocatedBytes() >= 0 ) {
+				this.stepAllocatedBytes.put( step.getCode(), step.getAllocatedBytes() );
+				this.allocatedBytes = this.allocatedBytes + step.getAllocatedBytes();
+			}
+			
+			this.completedSteps++;
+			this.completedProgress = this.completedProgress + stepProgress;
 			
 			// notify that the progress changed
-			for ( ProgressStepListener listener : this.listeners )
-				listener.progressChanged( step, singleStepProgress, this.maxProgress );
+			notifyChanged( step, stepProgress );
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Skip a step completed in a previous run, notifying
+	 * the listeners as if it was executed
+	 * @param step
+	 * @param data data of the step stored in the journal
+	 */
+	private void resume ( ProgressStep step, Object data ) {
+		
+		LOGGER.info("Progress step " + step.getCode() + " already completed, skipped");
+		
+		if ( data != null )
+			step.setData( data );
+		
+		double stepProgress = getShare( step );
+		
+		notifyStarted( step );
+		
+		synchronized ( this.dispatchLock ) {
+			
+			this.completedSteps++;
+			this.completedProgress = this.completedProgress + stepProgress;
+			this.resumedProgress = this.resumedProgress + stepProgress;
+			
+			notifyChanged( step, stepProgress );
+		}
+	}
+	
+	/**
+	 * Notify the listeners that the step started
+	 * @param step
+	 */
+	private void notifyStarted ( final ProgressStep step ) {
+		
+		final ProgressStepListener[] listeners = this.listeners.get();
+		
+		dispatch( new Runnable() {
+			@Override
+			public void run() {
+				for ( ProgressStepListener listener : listeners )
+					listener.progressStepStarted( step );
+			}
+		});
+	}
+	
+	/**
+	 * Notify the listeners that the step was completed
+	 * @param step
+	 * @param addProgress
+	 */
+	private void notifyChanged ( final ProgressStep step, final double addProgress ) {
+		
+		final ProgressStepListener[] listeners = this.listeners.get();
+		final int maxProgress = this.maxProgress;
+		
+		dispatch( new Runnable() {
+			@Override
+			public void run() {
+				for ( ProgressStepListener listener : listeners )
+					listener.progressChanged( step, addProgress, maxProgress );
+			}
+		});
+	}
+	
+	/**
+	 * Notify the listeners that the step failed
+	 * @param step
+	 */
+	private void notifyFailed ( final ProgressStep step ) {
+		
+		final ProgressStepListener[] listeners = this.listeners.get();
+		
+		dispatch( new Runnable() {
+			@Override
+			public void run() {
+				for ( ProgressStepListener listener : listeners )
+					listener.failed( step );
+			}
+		});
+	}
+	
+	/**
+	 * Run the notification in the listener executor if set, otherwise
+	 * in the current thread. Notifications are serialized, so that
+	 * steps executed in parallel do not notify at the same time.
+	 * @param notification
+	 */
+	private void dispatch ( final Runnable notification ) {
+		
+		Executor executor = this.listenerExecutor;
+		
+		if ( executor != null ) {
+			executor.execute( new Runnable() {
+				@Override
+				public void run() {
+					record( notification );
+				}
+			});
+			return;
+		}
+		
+		synchronized ( this.dispatchLock ) {
+			record( notification );
 		}
 	}
 	
 	/**
-	 * Add a progress listener
+	 * Run the notification, recording the time spent in
+	 * the flight recorder (see {@link ProgressEvents})
+	 * @param notification
+	 */
+	private void record ( Runnable notification ) {
+		
+		Object event = ProgressEvents.beginDispatch();
+		
+		notification.run();
+		
+		ProgressEvents.endDispatch( event, this, this.listeners.get().length );
+	}
+	
+	/**
+	 * Add a progress listener. It can be added also while
+	 * the steps are being executed.
 	 * @param listener
 	 */
 	public void addProgressListener ( ProgressStepListener listener ) {
 		this.listeners.add( listener );
 	}
 	
+	/**
+	 * Remove a progress listener
+	 * @param listener
+	 */
+	public void removeProgressListener ( ProgressStepListener listener ) {
+		this.listeners.remove( listener );
+	}
+	
+	/**
+	 * Notify the listeners in the executor instead of the thread
+	 * which executes the steps. Use a single thread executor to
+	 * receive the notifications in order.
+	 * @param listenerExecutor the executor, null to notify the
+	 * listeners in the thread which executes the steps
+	 */
+	public void setListenerExecutor ( Executor listenerExecutor ) {
+		this.listenerExecutor = listenerExecutor;
+	}
+	
 	/**
 	 * Get how long was the process in milliseconds
+	 * (sum of the time of each step).
 	 * Note that this quantity is defined only after
 	 * calling {@link #start()}.
 	 * @return
@@ -109,4 +819,196 @@ public class ProgressList extends ArrayList<ProgressStep> {
 	public long getTime() {
 		return this.time;
 	}
+	
+	/**
+	 * Get the progress of the current run, that is the
+	 * sum of the progress of the completed steps
+	 * @return progress from 0 to the max progress
+	 */
+	@Override
+	public int getProgress() {
+		
+		// tolerate the rounding errors of the sum
+		int progress = (int) ( this.completedProgress + 1e-6 );
+		
+		return Math.min( progress, this.maxProgress );
+	}
+	
+	@Override
+	public int getProgressLimit() {
+		return this.maxProgress;
+	}
+	
+	/**
+	 * Get the name of the step being executed
+	 * @return the name, null if not running
+	 */
+	@Override
+	public String getLabel() {
+		return this.label;
+	}
+	
+	@Override
+	public int getStepCount() {
+		return this.size();
+	}
+	
+	@Override
+	public int getCompletedSteps() {
+		return this.completedSteps;
+	}
+	
+	@Override
+	public Map<String, Long> getStepTimes() {
+		return Collections.unmodifiableMap( new HashMap<>( this.stepTimes ) );
+	}
+	
+	@Override
+	public Map<String, Long> getStepCpuTimes() {
+		return Collections.unmodifiableMap( new HashMap<>( this.stepCpuTimes ) );
+	}
+	
+	@Override
+	public Map<String, Long> getStepAllocatedBytes() {
+		return Collections.unmodifiableMap( new HashMap<>( this.stepAllocatedBytes ) );
+	}
+	
+	/**
+	 * Get the time of the steps completed in the current
+	 * (or last) run, measured with {@link System#nanoTime()}.
+	 * Unlike {@link #getTime()}, it is not rounded to the
+	 * millisecond for each step.
+	 * @return nanoseconds
+	 */
+	@Override
+	public long getWallTime() {
+		return this.wallTime;
+	}
+	
+	/**
+	 * Get the cpu time used by the steps completed in the
+	 * current (or last) run. If much lower than the wall
+	 * time, the steps were mostly waiting (e.g. for I/O).
+	 * @return nanoseconds, 0 if not profiling
+	 */
+	@Override
+	public long getCpuTime() {
+		return this.cpuTime;
+	}
+	
+	/**
+	 * Get the bytes allocated by the steps completed in
+	 * the current (or last) run
+	 * @return bytes, 0 if not profiling
+	 */
+	@Override
+	public long getAllocatedBytes() {
+		return this.allocatedBytes;
+	}
+	
+	/**
+	 * Get the completed steps per second
+	 * @return
+	 */
+	@Override
+	public double getUnitsPerSecond() {
+		
+		long elapsed = getElapsedMillis();
+		
+		if ( elapsed <= 0 )
+			return 0;
+		
+		return this.completedSteps * 1000d / elapsed;
+	}
+	
+	/**
+	 * Get how long the current (or last) run lasted
+	 * @return milliseconds, 0 if never started
+	 */
+	@Override
+	public long getElapsedMillis() {
+		
+		long start = this.startTime;
+		
+		if ( start == 0 )
+			return 0;
+		
+		long end = this.endTime;
+		
+		if ( end == 0 )
+			end = System.nanoTime();
+		
+		return TimeUnit.NANOSECONDS.toMillis( end - start );
+	}
+	
+	/**
+	 * Get the estimated time to execute the remaining steps. Since
+	 * the progress of the steps is weighted by their past durations
+	 * (if a history is set), the remaining time is proportional to
+	 * the remaining progress.
+	 * @return milliseconds, -1 if it cannot be estimated yet
+	 */
+	@Override
+	public long getEtaMillis() {
+		
+		if ( this.startTime == 0 || this.endTime != 0 )
+			return 0;
+		
+		// the steps resumed took no time in this run
+		double done = this.completedProgress - this.resumedProgress;
+		double remaining = this.maxProgress - this.completedProgress;
+		
+		if ( remaining <= 0 )
+			return 0;
+		
+		long elapsed = getElapsedMillis();
+		
+		// nothing completed yet, use the durations of the past runs
+		if ( done <= 0 ) {
+			
+			double expected = this.expectedTime;
+			
+			if ( expected < 0 )
+				return -1;
+			
+			return (long) Math.max( 0, expected * remaining / this.maxProgress - elapsed );
+		}
+		
+		return (long) ( elapsed * remaining / done );
+	}
+	
+	/**
+	 * Publish the metrics of the list with {@link ProgressMetrics}
+	 * @param name name of the metrics
+	 */
+	public void registerMetrics( String name ) {
+		ProgressMetrics.register( name, this );
+	}
+	
+	/**
+	 * Remove the metrics published with {@link #registerMetrics(String)}
+	 * @param name
+	 */
+	public void unregisterMetrics( String name ) {
+		ProgressMetrics.unregister( name, this );
+	}
+	
+	/**
+	 * Step of the list with the links to the steps
+	 * which depend on it. Used for the parallel execution.
+	 */
+	private static class StepNode {
+		
+		private ProgressStep step;
+		private Collection<StepNode> dependents;
+		private AtomicInteger pending;  // dependencies not completed yet
+		private AtomicBoolean cancelled;
+		
+		public StepNode( ProgressStep step ) {
+			this.step = step;
+			this.dependents = new ArrayList<>();
+			this.pending = new AtomicInteger();
+			this.cancelled = new AtomicBoolean();
+		}
+	}
 }
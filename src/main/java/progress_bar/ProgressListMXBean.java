@@ -0,0 +1,60 @@
+package progress_bar;
+
+import java.util.Map;
+
+/**
+ * Metrics of a {@link ProgressList}. The units of progress
+ * are the steps of the list.
+ */
+public interface ProgressListMXBean extends ProgressMXBean {
+
+	/**
+	 * Get the number of steps in the list
+	 * @return
+	 */
+	public int getStepCount();
+
+	/**
+	 * Get the number of steps completed in the current run
+	 * @return
+	 */
+	public int getCompletedSteps();
+
+	/**
+	 * Get the time of the last execution of each step
+	 * @return milliseconds by step code
+	 */
+	public Map<String, Long> getStepTimes();
+
+	/**
+	 * Get the cpu time of the last execution of each step,
+	 * for the steps which were profiled
+	 * @return nanoseconds by step code
+	 */
+	public Map<String, Long> getStepCpuTimes();
+
+	/**
+	 * Get the bytes allocated by the last execution of each
+	 * step, for the steps which were profiled
+	 * @return bytes by step code
+	 */
+	public Map<String, Long> getStepAllocatedBytes();
+
+	/**
+	 * Get the time of the steps completed in the current run
+	 * @return nanoseconds
+	 */
+	public long getWallTime();
+
+	/**
+	 * Get the cpu time of the steps completed in the current run
+	 * @return nanoseconds
+	 */
+	public long getCpuTime();
+
+	/**
+	 * Get the bytes allocated by the steps completed in the current run
+	 * @return
+	 */
+	public long getAllocatedBytes();
+}
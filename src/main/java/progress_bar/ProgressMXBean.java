@@ -0,0 +1,45 @@
+package progress_bar;
+
+/**
+ * Metrics of a progress, published with {@link ProgressMetrics}
+ * (for example as MBean, to be monitored with standard tools)
+ */
+public interface ProgressMXBean {
+
+	/**
+	 * Get the current progress
+	 * @return
+	 */
+	public int getProgress();
+
+	/**
+	 * Get the progress to reach
+	 * @return
+	 */
+	public int getProgressLimit();
+
+	/**
+	 * Get the label of the current operation, if any
+	 * @return
+	 */
+	public String getLabel();
+
+	/**
+	 * Get how many units of progress are done per second
+	 * @return
+	 */
+	public double getUnitsPerSecond();
+
+	/**
+	 * Get how long the process is running, in milliseconds
+	 * @return
+	 */
+	public long getElapsedMillis();
+
+	/**
+	 * Get the estimated time to complete the process, in
+	 * milliseconds. -1 if it cannot be estimated yet.
+	 * @return
+	 */
+	public long getEtaMillis();
+}
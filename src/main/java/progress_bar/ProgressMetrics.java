@@ -0,0 +1,175 @@
+package progress_bar;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Publishes the metrics of the progresses, so that long processes
+ * can be monitored without looking at the user interface. By default
+ * the metrics are registered as MBeans in the platform MBean server,
+ * under the domain {@value #DOMAIN}. A different registry (e.g. a
+ * bridge to a metrics library) can be set with {@link #setRegistry(Registry)}.
+ */
+public class ProgressMetrics {
+
+	private static final Logger LOGGER = LogManager.getLogger(ProgressMetrics.class);
+
+	public static final String DOMAIN = "progress_bar";
+
+	/**
+	 * Registry where the metrics are published
+	 */
+	public interface Registry {
+
+		public void register(String name, ProgressMXBean metrics);
+
+		/**
+		 * Remove all the metrics with the given name
+		 */
+		public void unregister(String name);
+
+		/**
+		 * Remove the metrics registered with the given name, keeping the
+		 * other metrics with the same name
+		 */
+		public default void unregister(String name, ProgressMXBean metrics) {
+			unregister(name);
+		}
+	}
+
+	private static volatile Registry registry = new JmxRegistry();
+
+	private ProgressMetrics() {
+	}
+
+	/**
+	 * Set where the metrics are published
+	 * @param registry
+	 */
+	public static void setRegistry(Registry registry) {
+		ProgressMetrics.registry = registry;
+	}
+
+	public static Registry getRegistry() {
+		return registry;
+	}
+
+	/**
+	 * Publish the metrics with the given name
+	 * @param name
+	 * @param metrics
+	 */
+	public static void register(String name, ProgressMXBean metrics) {
+		registry.register(name, metrics);
+	}
+
+	/**
+	 * Remove all the metrics with the given name
+	 * @param name
+	 */
+	public static void unregister(String name) {
+		registry.unregister(name);
+	}
+
+	/**
+	 * Remove the metrics published with the given name, keeping the
+	 * other metrics with the same name (e.g. rows with the same label)
+	 * @param name
+	 * @param metrics
+	 */
+	public static void unregister(String name, ProgressMXBean metrics) {
+		registry.unregister(name, metrics);
+	}
+
+	/**
+	 * Registers the metrics as MBeans in the platform MBean server. Each
+	 * MBean gets an id, so that metrics with the same name do not collide.
+	 */
+	public static class JmxRegistry implements Registry {
+
+		private final AtomicLong ids = new AtomicLong();
+		// by identity, the lists compare their steps
+		private final Map<ProgressMXBean, ObjectName> registered = Collections
+				.synchronizedMap(new IdentityHashMap<ProgressMXBean, ObjectName>());
+
+		@Override
+		public void register(String name, ProgressMXBean metrics) {
+
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+			try {
+
+				ObjectName objectName = getObjectName(name, metrics);
+
+				if (metrics instanceof ProgressListMXBean)
+					server.registerMBean(new StandardMBean((ProgressListMXBean) metrics, 
+							ProgressListMXBean.class, true), objectName);
+				else
+					server.registerMBean(new StandardMBean(metrics, ProgressMXBean.class, true), objectName);
+
+				// registered again with another name
+				ObjectName previous = this.registered.put(metrics, objectName);
+				if (previous != null && server.isRegistered(previous))
+					server.unregisterMBean(previous);
+
+			} catch (JMException e) {
+				LOGGER.error("Cannot register the progress metrics " + name, e);
+			}
+		}
+
+		@Override
+		public void unregister(String name) {
+
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+			try {
+				for (ObjectName objectName : server.queryNames(new ObjectName(DOMAIN + ":name=" 
+						+ ObjectName.quote(name) + ",*"), null)) {
+					server.unregisterMBean(objectName);
+				}
+			} catch (JMException e) {
+				LOGGER.error("Cannot unregister the progress metrics " + name, e);
+			}
+
+			synchronized (this.registered) {
+				for (Iterator<ObjectName> i = this.registered.values().iterator(); i.hasNext();) {
+					if (!server.isRegistered(i.next()))
+						i.remove();
+				}
+			}
+		}
+
+		@Override
+		public void unregister(String name, ProgressMXBean metrics) {
+
+			ObjectName objectName = this.registered.remove(metrics);
+
+			if (objectName == null)
+				return;
+
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+			} catch (JMException e) {
+				LOGGER.error("Cannot unregister the progress metrics " + name, e);
+			}
+		}
+
+		private ObjectName getObjectName(String name, ProgressMXBean metrics) throws JMException {
+			String type = metrics instanceof ProgressListMXBean ? "ProgressList" : "Progress";
+			return new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name) + ",id="
+					+ this.ids.incrementAndGet());
+		}
+	}
+}
@@ -0,0 +1,461 @@
+package progress_bar;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Headless progress of a process, from 0 to 100. It does not
+ * depend on any graphical library, therefore it can be used
+ * to report the progress of batch processes. Graphical bars
+ * as {@link CustomProgressBar} only render this model, by
+ * listening to its changes.
+ *
+ * Progresses can be added concurrently by several threads
+ * using {@link #addProgress(double)}.
+ */
+public class ProgressModel implements IProgress, ProgressMXBean {
+
+	// fixed point representation of the progress, used to
+	// accumulate fractional progresses from several threads
+	private static final int FRACTION_BITS = 32;
+	private static final double ONE = 1L << FRACTION_BITS;
+	private static final long ROUNDING_TOLERANCE = 1L << ( FRACTION_BITS - 16 );
+
+	private ListenerList<ProgressListener> listeners;
+	private volatile Executor listenerExecutor;
+
+	private final AtomicLong total = new AtomicLong();  // accumulated progress (fixed point)
+	private final AtomicInteger done = new AtomicInteger();  // integer progress
+	private final Object notifyLock = new Object();
+	private int notified = -1;  // last progress notified to listeners
+	private volatile int progressLimit = 100;  // set this to limit the progress
+	private double progressStep = 1;  // progress gained by a single operation step
+	private volatile String label;
+	private volatile long startTime;  // nano time of the first progress, 0 if not started
+	private volatile long endTime;  // nano time of the completion, 0 if not completed
+	private final RateEstimator rate = new RateEstimator();
+	private final CancellationToken cancellationToken = new CancellationToken();
+
+	public ProgressModel() {
+		this.listeners = new ListenerList<>( new ProgressListener[0] );
+
+		// the listeners see a cancelled process as stopped
+		this.cancellationToken.onCancel( new Runnable() {
+			@Override
+			public void run() {
+				stop( new CancellationException( "Cancelled" ) );
+			}
+		});
+	}
+
+	/**
+	 * Add a progress to the current one. If a double < 1 is passed
+	 * we accumulate the progresses until we reach an integer, in order
+	 * to notify the listeners.
+	 * This method can be called concurrently by several threads:
+	 * progresses are accumulated without locks and none is lost.
+	 * @param progress
+	 */
+	@Override
+	public void addProgress ( double progress ) {
+
+		if ( this.startTime == 0 )
+			this.startTime = System.nanoTime();
+
+		// accumulate the progress as fixed point number (single atomic add)
+		long total = this.total.addAndGet( Math.round( progress * ONE ) );
+
+		// notify only when we reach a new integer value of the
+		// progress (tolerating the rounding errors, e.g. 3 * 1/3 should give 1)
+		int reached = (int) ( ( total + ROUNDING_TOLERANCE ) >> FRACTION_BITS );
+
+		if ( reached > this.done.get() )
+			advance( reached );
+	}
+
+	/**
+	 * Set the progress
+	 * @param percent
+	 */
+	public void setProgress ( double percent ) {
+
+		int value = limit( percent );
+
+		// start again from zero
+		if ( this.startTime == 0 || value == 0 )
+			this.startTime = System.nanoTime();
+
+		// the rate is measured again from the new progress
+		if ( value == 0 || ( (long) value << FRACTION_BITS ) < this.total.get() )
+			this.rate.reset();
+
+		this.total.set( (long) value << FRACTION_BITS );
+		this.done.set( value );
+
+		notifyProgress( true );
+	}
+
+	/**
+	 * Get the current progress
+	 * @return progress from 0 to 100
+	 */
+	@Override
+	public int getProgress() {
+		return this.done.get();
+	}
+
+	/**
+	 * Get a value which changes each time some progress
+	 * is added, used to detect stalled progresses
+	 * @return
+	 */
+	long getProgressCount() {
+		return this.total.get();
+	}
+
+	/**
+	 * Move forward the integer progress to the reached value.
+	 * If another thread already moved it further, nothing is done.
+	 * @param reached
+	 */
+	private void advance ( int reached ) {
+
+		int value = limit( reached );
+
+		int prev;
+		do {
+			prev = this.done.get();
+
+			if ( value <= prev )
+				return;
+
+		} while ( !this.done.compareAndSet( prev, value ) );
+
+		notifyProgress( false );
+	}
+
+	/**
+	 * Bound the progress between 0 and the progress limit
+	 * @param percent
+	 * @return
+	 */
+	private int limit ( double percent ) {
+
+		int value;
+		if ( percent >= 100 ) {
+			value = 100;
+		}
+		else if ( percent < 0 ) {
+			value = 0;
+		}
+		else {
+			value = (int) percent;
+		}
+
+		// limit progress if required
+		return Math.min( value, this.progressLimit );
+	}
+
+	/**
+	 * Notify the listeners with the current progress.
+	 * Notifications are serialized so that listeners never
+	 * receive an older progress after a newer one. This
+	 * happens at most once per integer progress.
+	 * @param force notify even if the progress did not change
+	 */
+	private void notifyProgress ( boolean force ) {
+
+		synchronized ( this.notifyLock ) {
+
+			final int current = this.done.get();
+
+			if ( !force && current == this.notified )
+				return;
+
+			this.notified = current;
+
+			sampleRate();
+
+			final int limit = this.progressLimit;
+
+			// freeze the elapsed time when completed
+			if ( current >= limit )
+				this.endTime = System.nanoTime();
+			else
+				this.endTime = 0;
+			final ProgressListener[] listeners = this.listeners.get();
+			Executor executor = this.listenerExecutor;
+
+			if ( executor == null ) {
+				dispatch( listeners, current, limit );
+				return;
+			}
+
+			executor.execute( new Runnable() {
+				@Override
+				public void run() {
+					dispatch( listeners, current, limit );
+				}
+			});
+		}
+	}
+
+	/**
+	 * Notify the listeners, recording the time spent
+	 * in the flight recorder (see {@link ProgressEvents})
+	 * @param listeners
+	 * @param current
+	 * @param limit
+	 */
+	private void dispatch ( ProgressListener[] listeners, int current, int limit ) {
+
+		Object event = ProgressEvents.beginDispatch();
+
+		for ( ProgressListener listener : listeners )
+			listener.progressChanged( current, limit );
+
+		ProgressEvents.endDispatch( event, this, listeners.length );
+	}
+
+	/**
+	 * Notify the listeners in the executor instead of the thread which
+	 * changed the progress. Use a single thread executor to receive
+	 * the notifications in order.
+	 * @param executor the executor, null to notify the listeners
+	 * in the thread which changed the progress
+	 */
+	public void setListenerExecutor( Executor executor ) {
+		this.listenerExecutor = executor;
+	}
+
+	/**
+	 * Set a maximum limit for the progress
+	 * @param progressLimit
+	 */
+	public void setProgressLimit(int progressLimit) {
+		this.progressLimit = progressLimit;
+	}
+
+	/**
+	 * Remove the limit of progress if it was set
+	 * with {@link #setProgressLimit(int)}
+	 */
+	public void removeProgressLimit() {
+		this.progressLimit = 100;
+	}
+
+	/**
+	 * Get the maximum limit of the progress
+	 * @return
+	 */
+	@Override
+	public int getProgressLimit() {
+		return this.progressLimit;
+	}
+
+	/**
+	 * Check if the progress reached its limit
+	 * @return
+	 */
+	public boolean isCompleted() {
+		return this.done.get() >= this.progressLimit;
+	}
+
+	/**
+	 * Set how much should the progress increase its
+	 * value each operation step. Used with operations that
+	 * have several steps to automatize the progress increase
+	 * for each step by calling {@link #nextStep()}
+	 * @param progressStep
+	 */
+	public void setProgressStep(double progressStep) {
+		this.progressStep = progressStep;
+	}
+
+	/**
+	 * Increase the progress according to the
+	 * {@link #progressStep} variable
+	 */
+	public void nextStep() {
+		addProgress( this.progressStep );
+	}
+
+	/**
+	 * Set the label which describes the current operation
+	 * @param label
+	 */
+	@Override
+	public void setLabel(String label) {
+		this.label = label;
+	}
+
+	/**
+	 * Get the label of the current operation if set
+	 * @return
+	 */
+	@Override
+	public String getLabel() {
+		return this.label;
+	}
+
+	/**
+	 * Get the estimator of the rate of this progress
+	 * @return
+	 */
+	public RateEstimator getRateEstimator() {
+		sampleRate();
+		return this.rate;
+	}
+
+	/**
+	 * Give the current progress to the rate estimator. The rate
+	 * is sampled when it is read and when the integer progress
+	 * changes, so that adding progress does not pay for it.
+	 */
+	private void sampleRate() {
+		this.rate.update( this.total.get() / ONE );
+	}
+
+	/**
+	 * Describe the rate and the time to complete the
+	 * progress, e.g. "12.3k items/s, ETA 4m"
+	 * @return the description, null if not known yet
+	 */
+	public String getRateLabel() {
+		sampleRate();
+		return this.rate.toLabel( getRemaining() );
+	}
+
+	/**
+	 * Get the progress still to do to reach the limit
+	 * @return
+	 */
+	private double getRemaining() {
+		return Math.max( 0, this.progressLimit - this.total.get() / ONE );
+	}
+
+	/**
+	 * Get the progress per second, as moving average while
+	 * running and as average of the whole run once completed
+	 * @return
+	 */
+	@Override
+	public double getUnitsPerSecond() {
+
+		if ( this.endTime == 0 ) {
+			sampleRate();
+			return this.rate.getRate();
+		}
+
+		long elapsed = getElapsedMillis();
+
+		if ( elapsed <= 0 )
+			return 0;
+
+		return this.done.get() * 1000d / elapsed;
+	}
+
+	/**
+	 * Get how long since the first progress was reported,
+	 * until the completion
+	 * @return milliseconds
+	 */
+	@Override
+	public long getElapsedMillis() {
+
+		long start = this.startTime;
+
+		if ( start == 0 )
+			return 0;
+
+		long end = this.endTime;
+
+		if ( end == 0 )
+			end = System.nanoTime();
+
+		return TimeUnit.NANOSECONDS.toMillis( end - start );
+	}
+
+	/**
+	 * Get the estimated time to complete the progress
+	 * @return milliseconds, -1 if it cannot be estimated yet
+	 */
+	@Override
+	public long getEtaMillis() {
+
+		if ( isCompleted() )
+			return 0;
+
+		sampleRate();
+		return this.rate.getEtaMillis( getRemaining() );
+	}
+
+	/**
+	 * Publish the metrics of this progress with {@link ProgressMetrics}
+	 * @param name name of the metrics
+	 */
+	public void registerMetrics( String name ) {
+		ProgressMetrics.register( name, this );
+	}
+
+	/**
+	 * Remove the metrics published with {@link #registerMetrics(String)}
+	 * @param name
+	 */
+	public void unregisterMetrics( String name ) {
+		ProgressMetrics.unregister( name, this );
+	}
+
+	/**
+	 * Add a listener. It can be added also while
+	 * other threads are changing the progress.
+	 */
+	@Override
+	public void addProgressListener(ProgressListener listener) {
+		this.listeners.add( listener );
+	}
+
+	@Override
+	public void removeProgressListener(ProgressListener listener) {
+		this.listeners.remove( listener );
+	}
+
+	@Override
+	public void stop( final Exception exception ) {
+
+		final ProgressListener[] listeners = this.listeners.get();
+		Executor executor = this.listenerExecutor;
+
+		if ( executor == null ) {
+			for ( ProgressListener listener : listeners )
+				listener.progressStopped( exception );
+			return;
+		}
+
+		executor.execute( new Runnable() {
+			@Override
+			public void run() {
+				for ( ProgressListener listener : listeners )
+					listener.progressStopped( exception );
+			}
+		});
+	}
+
+	@Override
+	public void fillToMax() {
+		setProgress( this.progressLimit );
+	}
+
+	/**
+	 * Get the token used to cancel the process. When it
+	 * is cancelled, the listeners are notified with
+	 * {@link ProgressListener#progressStopped(Exception)}
+	 */
+	@Override
+	public CancellationToken getCancellationToken() {
+		return this.cancellationToken;
+	}
+}
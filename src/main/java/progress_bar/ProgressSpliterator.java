@@ -0,0 +1,256 @@
+package progress_bar;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Spliterator which reports the elements consumed by a stream, also a parallel
+ * one, to a progress:
+ *
+ * <pre>
+ * ProgressSpliterator.stream(records, bar, 100).forEach(record -&gt; importRecord(record));
+ * </pre>
+ *
+ * Each split counts its elements in a local counter, which is not shared with
+ * the other threads, and adds them to the progress only every batch of
+ * elements (about a thousandth of the total) and when the split is finished.
+ * When the source knows the size of its splits (e.g. lists and arrays), the
+ * elements are not even counted: the splits are divided in batches which are
+ * reported once consumed.
+ * The progress is therefore updated a bounded number of times, whatever the
+ * number of elements and threads. The total is the size of the source, if
+ * known, or it can be given explicitly.
+ *
+ * @param <T> type of the elements
+ */
+public class ProgressSpliterator<T> implements Spliterator<T> {
+
+	private static final int BATCHES = 1000; // batches for all the elements
+
+	private Spliterator<T> source;
+	private Tracker tracker;
+	private long count; // elements consumed and not reported yet
+
+	/**
+	 * Wrap a spliterator, taking the total from its size
+	 *
+	 * @param source
+	 * @param progress progress where the elements are reported
+	 * @param work     progress corresponding to all the elements
+	 */
+	public ProgressSpliterator(Spliterator<T> source, IProgress progress, double work) {
+		this(source, progress, work, source.estimateSize());
+	}
+
+	/**
+	 * Wrap a spliterator
+	 *
+	 * @param source
+	 * @param progress progress where the elements are reported
+	 * @param work     progress corresponding to all the elements
+	 * @param total    number of elements
+	 */
+	public ProgressSpliterator(Spliterator<T> source, IProgress progress, double work, long total) {
+		this(source, new Tracker(progress, work, total));
+	}
+
+	private ProgressSpliterator(Spliterator<T> source, Tracker tracker) {
+		this.source = source;
+		this.tracker = tracker;
+	}
+
+	/**
+	 * Create a stream of the collection which reports the progress
+	 *
+	 * @param collection
+	 * @param progress   progress where the elements are reported
+	 * @param work       progress corresponding to all the elements
+	 * @return a parallel stream
+	 */
+	public static <T> Stream<T> stream(Collection<T> collection, IProgress progress, double work) {
+		return StreamSupport.stream(new ProgressSpliterator<>(collection.spliterator(), progress, work), true);
+	}
+
+	/**
+	 * Wrap a stream to report the elements consumed. The stream is
+	 * parallel if the original stream is parallel. If the stream filters
+	 * its elements, the total is only an upper bound: call
+	 * {@link IProgress#fillToMax()} when the stream is consumed.
+	 *
+	 * @param stream
+	 * @param progress progress where the elements are reported
+	 * @param work     progress corresponding to all the elements
+	 * @return
+	 */
+	public static <T> Stream<T> wrap(final Stream<T> stream, IProgress progress, double work) {
+
+		Stream<T> wrapped = StreamSupport.stream(new ProgressSpliterator<>(stream.spliterator(), progress, work),
+				stream.isParallel());
+
+		return wrapped.onClose(new Runnable() {
+			@Override
+			public void run() {
+				stream.close();
+			}
+		});
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super T> action) {
+
+		if (!this.source.tryAdvance(action)) {
+			flush();
+			return false;
+		}
+
+		if (++this.count >= this.tracker.batch)
+			flush();
+
+		return true;
+	}
+
+	@Override
+	public void forEachRemaining(final Consumer<? super T> action) {
+
+		// the splits of the source know their size, consume them
+		// batch by batch without counting each element
+		if (this.source.hasCharacteristics(Spliterator.SUBSIZED) && this.source.getExactSizeIfKnown() >= 0) {
+			flush();
+			consume(this.source, action);
+			return;
+		}
+
+		this.source.forEachRemaining(new Consumer<T>() {
+			@Override
+			public void accept(T element) {
+
+				action.accept(element);
+
+				if (++ProgressSpliterator.this.count >= ProgressSpliterator.this.tracker.batch)
+					flush();
+			}
+		});
+
+		flush();
+	}
+
+	/**
+	 * Consume all the elements of a sized split, reporting them
+	 * after each batch. The split is divided in batches with
+	 * {@link Spliterator#trySplit()}, which keeps the encounter order.
+	 *
+	 * @param split
+	 * @param action
+	 */
+	private void consume(Spliterator<T> split, Consumer<? super T> action) {
+
+		long size = split.getExactSizeIfKnown();
+
+		if (size > this.tracker.batch) {
+
+			Spliterator<T> prefix = split.trySplit();
+
+			if (prefix != null) {
+				consume(prefix, action);
+				consume(split, action);
+				return;
+			}
+		}
+
+		split.forEachRemaining(action);
+
+		this.tracker.report(Math.max(0, size));
+	}
+
+	/**
+	 * Report the elements counted locally
+	 */
+	private void flush() {
+
+		long count = this.count;
+
+		if (count == 0)
+			return;
+
+		this.count = 0;
+		this.tracker.report(count);
+	}
+
+	@Override
+	public Spliterator<T> trySplit() {
+
+		Spliterator<T> split = this.source.trySplit();
+
+		if (split == null)
+			return null;
+
+		return new ProgressSpliterator<>(split, this.tracker);
+	}
+
+	@Override
+	public long estimateSize() {
+		return this.source.estimateSize();
+	}
+
+	@Override
+	public long getExactSizeIfKnown() {
+		return this.source.getExactSizeIfKnown();
+	}
+
+	@Override
+	public int characteristics() {
+		return this.source.characteristics();
+	}
+
+	@Override
+	public Comparator<? super T> getComparator() {
+		return this.source.getComparator();
+	}
+
+	/**
+	 * Progress shared by all the splits
+	 */
+	private static class Tracker {
+
+		private IProgress progress;
+		private double work;
+		private long total;
+		private long batch;
+		private AtomicLong done; // elements reported
+
+		public Tracker(IProgress progress, double work, long total) {
+			this.progress = progress;
+			this.work = work;
+			this.total = total > 0 && total != Long.MAX_VALUE ? total : 0;
+			this.batch = Math.max(1, this.total / BATCHES);
+			this.done = new AtomicLong();
+		}
+
+		/**
+		 * Add the elements consumed by a split. The progress never exceeds the
+		 * work, also if the total was underestimated.
+		 *
+		 * @param count
+		 */
+		public void report(long count) {
+
+			// stop the stream if the process was cancelled
+			this.progress.getCancellationToken().throwIfCancelled();
+
+			if (this.total == 0)
+				return;
+
+			long done = this.done.addAndGet(count);
+			long before = Math.min(done - count, this.total);
+			long after = Math.min(done, this.total);
+
+			if (after > before)
+				this.progress.addProgress((after - before) * this.work / this.total);
+		}
+	}
+}
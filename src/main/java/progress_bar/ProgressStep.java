@@ -1,5 +1,10 @@
 package progress_bar;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Class used to model a single progress step of a process
  * which is subdivided in several steps. A step contains the 
@@ -13,8 +18,17 @@ public abstract class ProgressStep {
 	private String code;
 	private String name;
 	private Object data;
+	private Collection<String> dependencies;
+	private volatile CancellationToken cancellationToken;
+	private boolean interruptible;
+	private long timeout;  // milliseconds, 0 if none
+	private volatile long progressCount;  // changed by keepAlive
+	private boolean profiling;
 	
 	private long time;
+	private long wallTime;  // nanoseconds
+	private long cpuTime;  // nanoseconds, -1 if not measured
+	private long allocatedBytes;  // -1 if not measured
 	
 	/**
 	 * Create a progress step
@@ -25,6 +39,10 @@ public abstract class ProgressStep {
 	public ProgressStep( String code, String name ) {
 		this.code = code;
 		this.name = name;
+		this.dependencies = new ArrayList<>();
+		this.cancellationToken = new CancellationToken();
+		this.cpuTime = -1;
+		this.allocatedBytes = -1;
 	}
 	
 	public ProgressStep( String code ) {
@@ -49,29 +67,208 @@ public abstract class ProgressStep {
 		return this.data;
 	}
 	
+	/**
+	 * Declare that this step can be started only after
+	 * the steps with the given codes were completed.
+	 * Used by {@link ProgressList} when the steps are
+	 * executed in parallel.
+	 * @param codes codes of the steps this step depends on
+	 */
+	public void dependsOn ( String... codes ) {
+		for ( String code : codes )
+			this.dependencies.add( code );
+	}
+	
+	/**
+	 * Get the codes of the steps which need to be completed
+	 * before starting this step
+	 * @return
+	 */
+	public Collection<String> getDependencies() {
+		return this.dependencies;
+	}
+	
+	/**
+	 * Get the token which tells if the step should stop. The
+	 * code in {@link #execute()} should check it regularly
+	 * (see {@link CancellationToken#throwIfCancelled()}).
+	 * @return
+	 */
+	public CancellationToken getCancellationToken() {
+		return this.cancellationToken;
+	}
+	
+	/**
+	 * Set the token checked by the step. Used by {@link ProgressList}
+	 * to cancel its steps together.
+	 * @param cancellationToken
+	 */
+	public void setCancellationToken ( CancellationToken cancellationToken ) {
+		this.cancellationToken = cancellationToken;
+	}
+	
+	/**
+	 * Interrupt the thread executing the step when it is cancelled,
+	 * to stop also blocking operations (e.g. waiting or reading from
+	 * an interruptible channel). False by default.
+	 * @param interruptible
+	 */
+	public void setInterruptible ( boolean interruptible ) {
+		this.interruptible = interruptible;
+	}
+	
+	/**
+	 * Set the maximum time the step can run. When it is exceeded,
+	 * the step is cancelled by the {@link ProgressWatchdog}.
+	 * @param timeout the timeout, 0 for none
+	 * @param unit unit of the timeout
+	 */
+	public void setTimeout ( long timeout, TimeUnit unit ) {
+		this.timeout = unit.toMillis( timeout );
+	}
+	
+	/**
+	 * Get the maximum time the step can run
+	 * @return milliseconds, 0 if none
+	 */
+	public long getTimeout() {
+		return this.timeout;
+	}
+	
+	/**
+	 * Tell the {@link ProgressWatchdog} that the step is still
+	 * progressing, so that it is not considered stalled. Cheap
+	 * enough to be called in the loops of {@link #execute()}.
+	 */
+	public void keepAlive() {
+		this.progressCount++;
+	}
+	
+	long getProgressCount() {
+		return this.progressCount;
+	}
+	
+	/**
+	 * Measure also the cpu time used by the step and the bytes
+	 * it allocates (see {@link #getCpuTime()} and {@link #getAllocatedBytes()}).
+	 * Only the thread which executes the step is measured. False by default.
+	 * @param profiling
+	 */
+	public void setProfiling ( boolean profiling ) {
+		this.profiling = profiling;
+	}
+	
+	public boolean isProfiling() {
+		return this.profiling;
+	}
+	
 	/**
 	 * Start the execution of the progress step
 	 * @throws Exception
+	 * @throws CancellationException if the step was cancelled
+	 * before or while it was executed
 	 */
 	public void start() throws Exception {
+		start( this.profiling );
+	}
+	
+	/**
+	 * Start the execution of the progress step, profiling only
+	 * this run if required. Used by {@link ProgressList} to
+	 * profile its steps without changing their setting.
+	 * @param profiling measure the cpu time and the allocated bytes
+	 * @throws Exception
+	 */
+	void start ( boolean profiling ) throws Exception {
+		
+		final CancellationToken token = this.cancellationToken;
+		
+		token.throwIfCancelled();
+		
+		ThreadInterrupter interrupt = null;
 		
-		long start = System.currentTimeMillis();
+		if ( this.interruptible ) {
+			interrupt = new ThreadInterrupter();
+			token.onCancel( interrupt );
+		}
 		
-		execute();
+		long cpuStart = profiling ? ThreadMetrics.getCpuTime() : -1;
+		long allocatedStart = profiling ? ThreadMetrics.getAllocatedBytes() : -1;
+		long start = System.nanoTime();
+		Object event = ProgressEvents.beginStep();
+		boolean completed = false;
 		
-		this.time = System.currentTimeMillis() - start;
+		try {
+			execute();
+			completed = true;
+		}
+		finally {
+			
+			ProgressEvents.endStep( event, this, completed && !token.isCancelled() );
+			
+			this.wallTime = System.nanoTime() - start;
+			this.time = TimeUnit.NANOSECONDS.toMillis( this.wallTime );
+			this.cpuTime = measured( cpuStart, profiling ? ThreadMetrics.getCpuTime() : -1 );
+			this.allocatedBytes = measured( allocatedStart, profiling ? ThreadMetrics.getAllocatedBytes() : -1 );
+			
+			if ( interrupt != null ) {
+				
+				token.removeOnCancel( interrupt );
+				
+				// do not leave the interruption to the next
+				// task executed by the thread
+				interrupt.close();
+			}
+		}
+		
+		// the result of a cancelled step is not reliable
+		token.throwIfCancelled();
+	}
+	
+	private static long measured ( long start, long end ) {
+		return start < 0 || end < 0 ? -1 : end - start;
 	}
 	
 	/**
 	 * Get how long was the single step
 	 * Note that this is defined only after
 	 * calling {@link #start()}
-	 * @return
+	 * @return milliseconds
 	 */
 	public long getTime() {
 		return this.time;
 	}
 	
+	/**
+	 * Get how long was the single step, measured
+	 * with {@link System#nanoTime()}
+	 * @return nanoseconds
+	 */
+	public long getWallTime() {
+		return this.wallTime;
+	}
+	
+	/**
+	 * Get the cpu time used by the thread which executed
+	 * the step. Measured only if profiling (see {@link #setProfiling(boolean)}).
+	 * If much lower than the wall time, the step was mostly
+	 * waiting (e.g. for I/O or locks).
+	 * @return nanoseconds, -1 if not measured
+	 */
+	public long getCpuTime() {
+		return this.cpuTime;
+	}
+	
+	/**
+	 * Get the bytes allocated by the thread which executed the
+	 * step. Measured only if profiling (see {@link #setProfiling(boolean)})
+	 * and if supported by the JVM.
+	 * @return bytes, -1 if not measured
+	 */
+	public long getAllocatedBytes() {
+		return this.allocatedBytes;
+	}
+	
 	/**
 	 * Get the progress step name
 	 * @return
@@ -0,0 +1,443 @@
+package progress_bar;
+
+import java.lang.management.LockInfo;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MonitorInfo;
+import java.lang.management.ThreadInfo;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Detects the tasks which stopped progressing. A single thread checks
+ * periodically all the watched progresses and steps: a task whose progress did
+ * not move for the stall timeout, or which is running for longer than its own
+ * timeout (see {@link ProgressStep#setTimeout(long, TimeUnit)}), is reported
+ * to the {@link StallListener}s, with the stack of the thread which executes
+ * it. Optionally the stalled task is also cancelled through its
+ * {@link CancellationToken}, while the tasks which exceed their timeout are
+ * always cancelled.
+ *
+ * The progress of a {@link ProgressModel} moves when progress is added, the
+ * progress of a {@link ProgressStep} when it calls
+ * {@link ProgressStep#keepAlive()}. The stall timeout is counted from when the
+ * task is watched, so that a step blocked before its first keepAlive (e.g.
+ * waiting for a lock) is reported too. Watching a task costs nothing to the
+ * threads which report the progress, the watchdog only reads it.
+ *
+ * A {@link ProgressList} watches its steps if a watchdog is set with
+ * {@link ProgressList#setWatchdog(ProgressWatchdog)}, or if they have a
+ * timeout (with the default watchdog, which only enforces the timeouts).
+ */
+public class ProgressWatchdog {
+
+	private static final Logger LOGGER = LogManager.getLogger(ProgressWatchdog.class);
+
+	public static final long DEFAULT_CHECK_INTERVAL = 1000; // ms
+
+	private static volatile ProgressWatchdog defaultWatchdog;
+
+	private ScheduledExecutorService scheduler;
+	private Set<Watch> watches;
+	private ListenerList<StallListener> listeners;
+	private long stallTimeout; // nanoseconds, 0 to detect only timeouts
+	private volatile boolean cancelOnStall;
+
+	/**
+	 * Create a watchdog which only enforces the timeouts of the steps
+	 */
+	public ProgressWatchdog() {
+		this(0, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Create a watchdog
+	 *
+	 * @param stallTimeout how long a task can stay without progressing before it
+	 *                     is considered stalled, 0 to detect only the timeouts
+	 * @param unit         unit of the timeout
+	 */
+	public ProgressWatchdog(long stallTimeout, TimeUnit unit) {
+		this(stallTimeout, unit, DEFAULT_CHECK_INTERVAL);
+	}
+
+	/**
+	 * Create a watchdog
+	 *
+	 * @param stallTimeout  how long a task can stay without progressing before it
+	 *                      is considered stalled, 0 to detect only the timeouts
+	 * @param unit          unit of the timeout
+	 * @param checkInterval milliseconds between two checks of the tasks
+	 */
+	public ProgressWatchdog(long stallTimeout, TimeUnit unit, long checkInterval) {
+
+		this.stallTimeout = unit.toNanos(stallTimeout);
+		this.watches = ConcurrentHashMap.newKeySet();
+		this.listeners = new ListenerList<>(new StallListener[0]);
+
+		ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "progress-watchdog");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		scheduler.setRemoveOnCancelPolicy(true);
+
+		scheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				check();
+			}
+		}, checkInterval, checkInterval, TimeUnit.MILLISECONDS);
+
+		this.scheduler = scheduler;
+	}
+
+	/**
+	 * Get the watchdog used for the steps with a timeout when no watchdog is set
+	 * in their list. It only enforces the timeouts.
+	 *
+	 * @return
+	 */
+	public static ProgressWatchdog getDefault() {
+
+		if (defaultWatchdog == null) {
+			synchronized (ProgressWatchdog.class) {
+				if (defaultWatchdog == null)
+					defaultWatchdog = new ProgressWatchdog();
+			}
+		}
+
+		return defaultWatchdog;
+	}
+
+	/**
+	 * Cancel the stalled tasks, after notifying the listeners. False by default.
+	 *
+	 * @param cancelOnStall
+	 */
+	public void setCancelOnStall(boolean cancelOnStall) {
+		this.cancelOnStall = cancelOnStall;
+	}
+
+	public void addStallListener(StallListener listener) {
+		this.listeners.add(listener);
+	}
+
+	public void removeStallListener(StallListener listener) {
+		this.listeners.remove(listener);
+	}
+
+	/**
+	 * Watch a progress until it is completed or {@link #unwatch(Watch)} is
+	 * called
+	 *
+	 * @param name   name of the task, used in the notifications
+	 * @param model  progress of the task
+	 * @param worker thread which executes the task, whose stack is reported, or
+	 *               null if not known
+	 * @return the watch, to stop watching the progress
+	 */
+	public Watch watch(String name, ProgressModel model, Thread worker) {
+		return add(new Watch(name, model, null, worker, model.getCancellationToken(), 0));
+	}
+
+	/**
+	 * Watch a step executed by the current thread until {@link #unwatch(Watch)}
+	 * is called
+	 *
+	 * @param step
+	 * @return the watch, to stop watching the step
+	 */
+	public Watch watch(ProgressStep step) {
+
+		long deadline = step.getTimeout() > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(step.getTimeout())
+				: 0;
+
+		return add(new Watch(step.getCode(), null, step, Thread.currentThread(), step.getCancellationToken(),
+				deadline));
+	}
+
+	private Watch add(Watch watch) {
+		this.watches.add(watch);
+		return watch;
+	}
+
+	/**
+	 * Stop watching a task
+	 *
+	 * @param watch
+	 */
+	public void unwatch(Watch watch) {
+		this.watches.remove(watch);
+	}
+
+	/**
+	 * Get how many tasks are watched
+	 *
+	 * @return
+	 */
+	public int getWatchedCount() {
+		return this.watches.size();
+	}
+
+	/**
+	 * Stop the thread of the watchdog
+	 */
+	public void close() {
+		this.scheduler.shutdownNow();
+	}
+
+	/**
+	 * Check all the tasks, in the thread of the watchdog
+	 */
+	private void check() {
+		check(System.nanoTime());
+	}
+
+	/**
+	 * Check all the tasks as if it was the given time
+	 *
+	 * @param now nano time
+	 */
+	void check(long now) {
+
+		for (Watch watch : this.watches) {
+
+			try {
+				check(watch, now);
+			} catch (RuntimeException e) {
+				LOGGER.error("Cannot check the progress of " + watch.name, e);
+			}
+		}
+	}
+
+	private void check(Watch watch, long now) {
+
+		// completed progresses do not need to be watched anymore
+		if (watch.model != null && watch.model.isCompleted()) {
+			this.watches.remove(watch);
+			return;
+		}
+
+		long count = watch.getProgressCount();
+
+		if (count != watch.lastCount) {
+			watch.lastCount = count;
+			watch.lastChange = now;
+			watch.stalled = false;
+		}
+
+		if (watch.deadline != 0 && now - watch.deadline >= 0) {
+
+			// the timeout is reported only once, the task is cancelled
+			this.watches.remove(watch);
+
+			LOGGER.warn("Progress task " + watch.name + " exceeded its timeout");
+
+			notifyStalled(watch, now, true);
+			watch.token.cancel();
+			return;
+		}
+
+		if (this.stallTimeout <= 0 || watch.stalled || now - watch.lastChange < this.stallTimeout)
+			return;
+
+		watch.stalled = true;
+
+		LOGGER.warn("Progress task " + watch.name + " did not progress for "
+				+ TimeUnit.NANOSECONDS.toSeconds(now - watch.lastChange) + " seconds");
+
+		notifyStalled(watch, now, false);
+
+		if (this.cancelOnStall)
+			watch.token.cancel();
+	}
+
+	private void notifyStalled(Watch watch, long now, boolean timeout) {
+
+		StallListener[] listeners = this.listeners.get();
+
+		if (listeners.length == 0)
+			return;
+
+		// how long it is running if it exceeded its timeout
+		long since = timeout ? watch.started : watch.lastChange;
+
+		Stall stall = new Stall(watch.name, watch.worker, TimeUnit.NANOSECONDS.toMillis(now - since), timeout,
+				dump(watch.worker));
+
+		for (StallListener listener : listeners) {
+			try {
+				listener.taskStalled(stall);
+			} catch (RuntimeException e) {
+				LOGGER.error("Stall listener failed", e);
+			}
+		}
+	}
+
+	/**
+	 * Describe the state of the thread, with its full stack and its locks
+	 *
+	 * @param thread
+	 * @return the dump, null if the thread is not known
+	 */
+	private static String dump(Thread thread) {
+
+		if (thread == null)
+			return null;
+
+		ThreadInfo[] infos = ManagementFactory.getThreadMXBean().getThreadInfo(new long[] { thread.getId() }, true,
+				true);
+
+		ThreadInfo info = infos[0];
+
+		// terminated in the meantime
+		if (info == null)
+			return null;
+
+		StringBuilder dump = new StringBuilder();
+
+		dump.append('"').append(info.getThreadName()).append("\" ").append(info.getThreadState());
+
+		if (info.getLockName() != null)
+			dump.append(" on ").append(info.getLockName());
+
+		if (info.getLockOwnerName() != null)
+			dump.append(" owned by \"").append(info.getLockOwnerName()).append('"');
+
+		dump.append('\n');
+
+		StackTraceElement[] stack = info.getStackTrace();
+
+		for (int i = 0; i < stack.length; i++) {
+
+			dump.append("\tat ").append(stack[i]).append('\n');
+
+			for (MonitorInfo monitor : info.getLockedMonitors()) {
+				if (monitor.getLockedStackDepth() == i)
+					dump.append("\t- locked ").append(monitor).append('\n');
+			}
+		}
+
+		for (LockInfo lock : info.getLockedSynchronizers())
+			dump.append("\t- locked ").append(lock).append('\n');
+
+		return dump.toString();
+	}
+
+	/**
+	 * Task watched by the watchdog
+	 */
+	public static class Watch {
+
+		private String name;
+		private ProgressModel model;
+		private ProgressStep step;
+		private Thread worker;
+		private CancellationToken token;
+		private long started; // nano time when it was watched
+		private long deadline; // nano time, 0 if no timeout
+
+		// accessed only by the thread of the watchdog
+		private long lastCount;
+		private long lastChange;
+		private boolean stalled;
+
+		private Watch(String name, ProgressModel model, ProgressStep step, Thread worker, CancellationToken token,
+				long deadline) {
+			this.name = name;
+			this.model = model;
+			this.step = step;
+			this.worker = worker;
+			this.token = token;
+			this.deadline = deadline;
+			this.lastCount = getProgressCount();
+			this.started = System.nanoTime();
+			this.lastChange = this.started;
+		}
+
+		private long getProgressCount() {
+			return this.model != null ? this.model.getProgressCount() : this.step.getProgressCount();
+		}
+
+		public String getName() {
+			return this.name;
+		}
+	}
+
+	/**
+	 * Stalled task, as notified to the listeners
+	 */
+	public static class Stall {
+
+		private String name;
+		private Thread thread;
+		private long stalledMillis;
+		private boolean timeout;
+		private String threadDump;
+
+		private Stall(String name, Thread thread, long stalledMillis, boolean timeout, String threadDump) {
+			this.name = name;
+			this.thread = thread;
+			this.stalledMillis = stalledMillis;
+			this.timeout = timeout;
+			this.threadDump = threadDump;
+		}
+
+		/**
+		 * Get the name of the task (the code for the steps)
+		 *
+		 * @return
+		 */
+		public String getName() {
+			return this.name;
+		}
+
+		/**
+		 * Get the thread which executes the task
+		 *
+		 * @return the thread, null if not known
+		 */
+		public Thread getThread() {
+			return this.thread;
+		}
+
+		/**
+		 * Get since how long the task did not progress, or how long it is running
+		 * if it exceeded its timeout (see {@link #isTimeout()})
+		 *
+		 * @return
+		 */
+		public long getStalledMillis() {
+			return this.stalledMillis;
+		}
+
+		/**
+		 * Check if the task exceeded its timeout, instead of not progressing
+		 *
+		 * @return
+		 */
+		public boolean isTimeout() {
+			return this.timeout;
+		}
+
+		/**
+		 * Get the stack and the locks of the thread which executes the task
+		 *
+		 * @return the dump, null if the thread is not known
+		 */
+		public String getThreadDump() {
+			return this.threadDump;
+		}
+	}
+}
@@ -0,0 +1,316 @@
+package progress_bar;
+
+import java.text.MessageFormat;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import messages.Messages;
+
+/**
+ * Estimates how fast a progress is going, as an exponentially weighted moving
+ * average of the units of progress recorded per second. Recent samples weigh
+ * more than the old ones (the weight halves every half life), so the rate
+ * follows the changes of speed without jumping at each record.
+ *
+ * Units can be recorded concurrently by several threads with
+ * {@link #record(double)}, which does not allocate nor lock: the units are
+ * accumulated and the average is updated once every sample interval. A
+ * progress which already counts its units can instead be sampled with
+ * {@link #update(double)}, e.g. when it is shown, without any cost on the
+ * threads which report it. The time is read from a {@link Clock}, which can
+ * be replaced in tests.
+ */
+public class RateEstimator {
+
+	public static final long DEFAULT_SAMPLE_INTERVAL = 250; // ms
+	public static final long DEFAULT_HALF_LIFE = 5000; // ms
+
+	// fixed point representation of the units, as in the progress model
+	private static final int FRACTION_BITS = 32;
+	private static final double ONE = 1L << FRACTION_BITS;
+
+	private static final long NOT_STARTED = Long.MIN_VALUE;
+
+	/**
+	 * Source of the time used by the estimator
+	 */
+	public interface Clock {
+
+		/**
+		 * Get the current time in nanoseconds, only the differences between two
+		 * calls are meaningful (as for {@link System#nanoTime()})
+		 *
+		 * @return
+		 */
+		public long nanoTime();
+	}
+
+	/**
+	 * Clock of the system
+	 */
+	public static final Clock SYSTEM_CLOCK = new Clock() {
+		@Override
+		public long nanoTime() {
+			return System.nanoTime();
+		}
+	};
+
+	private final Clock clock;
+	private final long sampleInterval; // nanoseconds
+	private final double halfLife; // nanoseconds
+
+	private final AtomicLong pending = new AtomicLong(); // units since the last sample (fixed point)
+	private final AtomicLong position = new AtomicLong(); // last position sampled (fixed point)
+	private final AtomicLong lastSample = new AtomicLong(NOT_STARTED); // time of the last sample
+	private volatile double rate; // units per second
+	private volatile boolean sampled; // if the rate was computed at least once
+	private volatile double unitScale = 1;
+
+	public RateEstimator() {
+		this(SYSTEM_CLOCK, DEFAULT_SAMPLE_INTERVAL, DEFAULT_HALF_LIFE, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Create the estimator
+	 *
+	 * @param clock          source of the time
+	 * @param sampleInterval minimum time between two updates of the average
+	 * @param halfLife       time after which a sample weighs half
+	 * @param unit           unit of the times
+	 */
+	public RateEstimator(Clock clock, long sampleInterval, long halfLife, TimeUnit unit) {
+		this.clock = clock;
+		this.sampleInterval = unit.toNanos(sampleInterval);
+		this.halfLife = Math.max(1, unit.toNanos(halfLife));
+	}
+
+	/**
+	 * Record some units of progress. The first call starts measuring the time.
+	 * It can be called concurrently by several threads.
+	 *
+	 * @param units
+	 */
+	public void record(double units) {
+		this.pending.addAndGet(Math.round(units * ONE));
+		tick(this.clock.nanoTime(), true);
+	}
+
+	/**
+	 * Record the current position of a progress: the units are the difference
+	 * from the position of the previous call. The first call (also after
+	 * {@link #reset()}) only starts measuring the time from the position. It can
+	 * be called concurrently by several threads, a position lower than the
+	 * previous one is ignored (call {@link #reset()} if the progress moved back).
+	 *
+	 * @param position
+	 */
+	public void update(double position) {
+
+		long value = Math.round(position * ONE);
+		long now = this.clock.nanoTime();
+
+		// start from this position
+		if (this.lastSample.get() == NOT_STARTED) {
+
+			synchronized (this) {
+				if (this.lastSample.get() == NOT_STARTED) {
+					this.position.set(value);
+					this.lastSample.set(now);
+					return;
+				}
+			}
+		}
+
+		long previous;
+		do {
+			previous = this.position.get();
+
+			if (value <= previous)
+				break;
+
+		} while (!this.position.compareAndSet(previous, value));
+
+		if (value > previous)
+			this.pending.addAndGet(value - previous);
+
+		tick(now, false);
+	}
+
+	/**
+	 * Update the average if a sample interval elapsed since the last update
+	 *
+	 * @param now
+	 * @param start true to start measuring the time if not started yet
+	 */
+	private void tick(long now, boolean start) {
+
+		long last = this.lastSample.get();
+
+		if (last == NOT_STARTED) {
+			if (start)
+				this.lastSample.compareAndSet(NOT_STARTED, now);
+			return;
+		}
+
+		long elapsed = now - last;
+
+		// only one thread takes the sample
+		if (elapsed < this.sampleInterval || elapsed <= 0 || !this.lastSample.compareAndSet(last, now))
+			return;
+
+		double units = this.pending.getAndSet(0) / ONE;
+		double instant = units * TimeUnit.SECONDS.toNanos(1) / elapsed;
+
+		synchronized (this) {
+
+			if (!this.sampled) {
+				this.rate = instant;
+				this.sampled = true;
+				return;
+			}
+
+			double weight = 1 - Math.pow(0.5, elapsed / this.halfLife);
+			this.rate = this.rate + weight * (instant - this.rate);
+		}
+	}
+
+	/**
+	 * Get the average rate. If nothing was recorded in the last sample interval
+	 * the rate decreases, so that a stalled progress is noticed.
+	 *
+	 * @return units per second, 0 if not known yet
+	 */
+	public double getRate() {
+		tick(this.clock.nanoTime(), false);
+		return this.rate;
+	}
+
+	/**
+	 * Get the average rate in items, see {@link #setUnitScale(double)}
+	 *
+	 * @return items per second, 0 if not known yet
+	 */
+	public double getItemsPerSecond() {
+		return getRate() * this.unitScale;
+	}
+
+	/**
+	 * Estimate the time needed to complete the remaining units at the current rate
+	 *
+	 * @param remainingUnits
+	 * @return milliseconds, -1 if the rate is not known yet
+	 */
+	public long getEtaMillis(double remainingUnits) {
+
+		if (remainingUnits <= 0)
+			return 0;
+
+		double rate = getRate();
+
+		if (rate <= 0)
+			return -1;
+
+		return (long) (remainingUnits * 1000 / rate);
+	}
+
+	/**
+	 * Set how many items are represented by a unit of progress. For example, a
+	 * bar from 0 to 100 which shows the processing of 5000 records has a scale of
+	 * 50. Used only to show the rate.
+	 *
+	 * @param unitScale items for each unit
+	 */
+	public void setUnitScale(double unitScale) {
+		this.unitScale = unitScale;
+	}
+
+	public double getUnitScale() {
+		return this.unitScale;
+	}
+
+	/**
+	 * Forget the recorded units, the time is measured again from the next record
+	 */
+	public void reset() {
+		synchronized (this) {
+			this.pending.set(0);
+			this.position.set(0);
+			this.lastSample.set(NOT_STARTED);
+			this.rate = 0;
+			this.sampled = false;
+		}
+	}
+
+	/**
+	 * Describe the rate and the time to complete, e.g. "12.3k items/s, ETA 4m"
+	 *
+	 * @param remainingUnits units to complete the progress
+	 * @return the description, null if the rate is not known yet
+	 */
+	public String toLabel(double remainingUnits) {
+
+		double rate = getItemsPerSecond();
+
+		if (!this.sampled)
+			return null;
+
+		String items = formatCount(rate);
+
+		if (remainingUnits <= 0)
+			return MessageFormat.format(Messages.getString("ProgressRate.Rate"), items);
+
+		long eta = getEtaMillis(remainingUnits);
+
+		String time = eta < 0 ? "?" : formatDuration(eta);
+
+		return MessageFormat.format(Messages.getString("ProgressRate.RateEta"), items, time);
+	}
+
+	/**
+	 * Format a number in a short form, e.g. 12.3k
+	 *
+	 * @param count
+	 * @return
+	 */
+	public static String formatCount(double count) {
+
+		String[] suffixes = { "", "k", "M", "G", "T" };
+
+		int i = 0;
+		while (Math.abs(count) >= 999.95 && i < suffixes.length - 1) {
+			count = count / 1000;
+			i++;
+		}
+
+		String pattern = Math.abs(count) < 99.95 ? "%.1f%s" : "%.0f%s";
+
+		return String.format(Locale.ROOT, pattern, count, suffixes[i]);
+	}
+
+	/**
+	 * Format a duration in a short form, e.g. 45s, 4m, 2h 5m
+	 *
+	 * @param millis
+	 * @return
+	 */
+	public static String formatDuration(long millis) {
+
+		long seconds = TimeUnit.MILLISECONDS.toSeconds(millis);
+
+		if (seconds < 60)
+			return seconds + "s";
+
+		long minutes = seconds / 60;
+
+		if (minutes < 60)
+			return minutes + "m";
+
+		long hours = minutes / 60;
+
+		if (hours < 24)
+			return hours + "h " + (minutes % 60) + "m";
+
+		return (hours / 24) + "d " + (hours % 24) + "h";
+	}
+}
@@ -0,0 +1,17 @@
+package progress_bar;
+
+/**
+ * Listener of a {@link ProgressWatchdog}, notified when a watched task does not
+ * progress anymore or exceeds its timeout
+ */
+public interface StallListener {
+
+	/**
+	 * Called in the thread of the watchdog when a task is stalled. Called once
+	 * for each stall: if the task progresses again and stalls later, it is
+	 * called again.
+	 *
+	 * @param stall the task and the state of its thread
+	 */
+	public void taskStalled(ProgressWatchdog.Stall stall);
+}
@@ -0,0 +1,260 @@
+package progress_bar;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Journal of the {@link ProgressStep} completed by a {@link ProgressList},
+ * used to resume a run which failed without executing again the steps already
+ * completed. For each completed step the journal records its code and its data
+ * (see {@link ProgressStep#getData()}), so that the following steps find it
+ * when the run is resumed. The data must be serializable, otherwise the step
+ * is not recorded and it is executed again.
+ *
+ * The steps are appended to the file as soon as they are completed. The
+ * journal is cleared by the list when all the steps are completed.
+ */
+public class StepCheckpoint {
+
+	private static final Logger LOGGER = LogManager.getLogger(StepCheckpoint.class);
+
+	private static final int NO_DATA = -1;
+
+	private Path file;
+	private Map<String, Object> completed; // data by code of the completed steps
+
+	/**
+	 * Open the journal stored in the file. If the file does not exist, it is
+	 * created when the first step is completed.
+	 *
+	 * @param file
+	 */
+	public StepCheckpoint(Path file) {
+		this.file = file;
+		this.completed = Collections.synchronizedMap(new LinkedHashMap<String, Object>());
+		load();
+	}
+
+	/**
+	 * Read the steps completed in the previous runs. A last step not completely
+	 * written (or a corrupted one, with everything after it) is removed from the
+	 * file, so that the new steps are appended after the valid ones.
+	 */
+	private void load() {
+
+		if (!Files.exists(this.file))
+			return;
+
+		long valid = 0; // length of the complete records
+
+		try (InputStream input = Files.newInputStream(this.file);
+				DataInputStream data = new DataInputStream(new BufferedInputStream(input));) {
+
+			long size = Files.size(this.file);
+
+			while (true) {
+
+				String code;
+				byte[] payload = null;
+
+				try {
+
+					code = data.readUTF();
+					int length = data.readInt();
+
+					if (length != NO_DATA) {
+
+						long remaining = size - valid - StepHistory.getUTFLength(code) - Integer.BYTES;
+
+						// a length never written, do not allocate it
+						if (length < 0 || length > remaining)
+							throw new EOFException("Invalid length " + length + " of the progress step " + code);
+
+						payload = new byte[length];
+						data.readFully(payload);
+					}
+
+				} catch (EOFException e) {
+					// end of file (or last step not completely written)
+					break;
+				} catch (IOException e) {
+					// corrupted step, e.g. invalid code
+					LOGGER.warn("Cannot read a progress step of the checkpoint " + this.file, e);
+					break;
+				}
+
+				valid += StepHistory.getUTFLength(code) + Integer.BYTES + (payload == null ? 0 : payload.length);
+
+				try {
+					this.completed.put(code, deserialize(payload));
+				} catch (IOException | ClassNotFoundException e) {
+					// the step will be executed again
+					LOGGER.error("Cannot read the data of the progress step " + code, e);
+				}
+			}
+
+		} catch (IOException e) {
+			LOGGER.error("Cannot read the progress checkpoint " + this.file, e);
+			return;
+		}
+
+		try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.WRITE);) {
+
+			if (channel.size() > valid) {
+				LOGGER.warn("Removing the unreadable steps at the end of the progress checkpoint " + this.file);
+				channel.truncate(valid);
+			}
+
+		} catch (IOException e) {
+			LOGGER.error("Cannot repair the progress checkpoint " + this.file, e);
+		}
+	}
+
+	/**
+	 * Check if the step was completed in a previous run
+	 *
+	 * @param code code of the step
+	 * @return
+	 */
+	public boolean isCompleted(String code) {
+		return this.completed.containsKey(code);
+	}
+
+	/**
+	 * Get the data of a completed step
+	 *
+	 * @param code code of the step
+	 * @return the data, null if the step had no data
+	 */
+	public Object getData(String code) {
+		return this.completed.get(code);
+	}
+
+	/**
+	 * Get the codes of the completed steps, in order of completion
+	 *
+	 * @return
+	 */
+	public Set<String> getCompleted() {
+		synchronized (this.completed) {
+			return Collections.unmodifiableSet(new LinkedHashSet<>(this.completed.keySet()));
+		}
+	}
+
+	/**
+	 * Record that the step was completed and store its data. It can be called by
+	 * several threads. If the data cannot be stored (e.g. it is not
+	 * serializable), the step is not recorded and it will be executed again in
+	 * the next run.
+	 *
+	 * @param code code of the step
+	 * @param data data of the step, null if none
+	 */
+	public synchronized void record(String code, Object data) {
+
+		byte[] payload = null;
+
+		if (data != null) {
+
+			if (!(data instanceof Serializable)) {
+				LOGGER.warn("The data of the progress step " + code
+						+ " is not serializable, the step will be executed again in the next run");
+				return;
+			}
+
+			try {
+				payload = serialize(data);
+			} catch (IOException e) {
+				LOGGER.error("Cannot store the data of the progress step " + code
+						+ ", the step will be executed again in the next run", e);
+				return;
+			}
+		}
+
+		try (OutputStream output = Files.newOutputStream(this.file, StandardOpenOption.CREATE,
+				StandardOpenOption.APPEND);
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output));) {
+
+			out.writeUTF(code);
+
+			if (payload == null) {
+				out.writeInt(NO_DATA);
+			} else {
+				out.writeInt(payload.length);
+				out.write(payload);
+			}
+
+			this.completed.put(code, data);
+
+		} catch (IOException e) {
+			LOGGER.error("Cannot store the progress checkpoint " + this.file, e);
+		}
+	}
+
+	/**
+	 * Forget all the completed steps, the next run will execute all of them
+	 */
+	public synchronized void clear() {
+
+		this.completed.clear();
+
+		try {
+			Files.deleteIfExists(this.file);
+		} catch (IOException e) {
+			LOGGER.error("Cannot delete the progress checkpoint " + this.file, e);
+		}
+	}
+
+	/**
+	 * Get the file of the journal
+	 *
+	 * @return
+	 */
+	public Path getFile() {
+		return this.file;
+	}
+
+	private static byte[] serialize(Object data) throws IOException {
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes);) {
+			out.writeObject(data);
+		}
+
+		return bytes.toByteArray();
+	}
+
+	private static Object deserialize(byte[] payload) throws IOException, ClassNotFoundException {
+
+		if (payload == null)
+			return null;
+
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(payload));) {
+			return in.readObject();
+		}
+	}
+}
@@ -0,0 +1,240 @@
+package progress_bar;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * History of the durations of the {@link ProgressStep}, by step code. It is
+ * used by {@link ProgressList} to give to each step a share of the progress
+ * proportional to how long it took in the past runs, and to estimate the time
+ * to complete.
+ *
+ * The durations are appended to a compact binary file as soon as each step is
+ * completed, so that the history survives also to interrupted runs. The file is
+ * read once when the history is created, then the expected durations are kept
+ * in memory and the lookups do not access the file. When the file contains too
+ * many old records it is rewritten with only the current estimates.
+ */
+public class StepHistory {
+
+	private static final Logger LOGGER = LogManager.getLogger(StepHistory.class);
+
+	// weight of the last duration in the expected duration
+	private static final double WEIGHT = 0.3;
+
+	// rewrite the file when it has this many records per step
+	private static final int COMPACT_FACTOR = 8;
+
+	private Path file;
+	private Map<String, Double> expected; // expected duration by code
+	private int records; // records in the file
+
+	/**
+	 * Open the history stored in the file. If the file does not exist, it is
+	 * created with the first record.
+	 *
+	 * @param file
+	 */
+	public StepHistory(Path file) {
+		this.file = file;
+		this.expected = new ConcurrentHashMap<>();
+		load();
+	}
+
+	/**
+	 * Read all the records of the file. A last record not completely written
+	 * (e.g. the process was killed), or a corrupted one with everything after
+	 * it, is removed from the file, so that the new records are appended after
+	 * the valid ones.
+	 */
+	private void load() {
+
+		if (!Files.exists(this.file))
+			return;
+
+		long valid = 0; // length of the complete records
+
+		try (InputStream input = Files.newInputStream(this.file);
+				DataInputStream data = new DataInputStream(new BufferedInputStream(input));) {
+
+			while (true) {
+
+				String code;
+				long duration;
+
+				try {
+					code = data.readUTF();
+					duration = data.readLong();
+				} catch (EOFException e) {
+					// end of file (or last record not completely written)
+					break;
+				} catch (IOException e) {
+					// corrupted record, e.g. invalid code
+					LOGGER.warn("Cannot read a record of the progress step history " + this.file, e);
+					break;
+				}
+
+				update(code, duration);
+				this.records++;
+
+				valid += getUTFLength(code) + Long.BYTES;
+			}
+
+		} catch (IOException e) {
+			LOGGER.error("Cannot read the progress step history " + this.file, e);
+			return;
+		}
+
+		try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.WRITE);) {
+
+			if (channel.size() > valid) {
+				LOGGER.warn("Removing the unreadable records at the end of the progress step history " + this.file);
+				channel.truncate(valid);
+			}
+
+		} catch (IOException e) {
+			LOGGER.error("Cannot repair the progress step history " + this.file, e);
+		}
+	}
+
+	/**
+	 * Get how many bytes a string takes when written with
+	 * {@link DataOutputStream#writeUTF(String)}
+	 *
+	 * @param value
+	 * @return
+	 */
+	static int getUTFLength(String value) {
+
+		int length = 2; // the length itself
+
+		for (int i = 0; i < value.length(); i++) {
+
+			char c = value.charAt(i);
+
+			if (c >= 0x0001 && c <= 0x007F)
+				length++;
+			else if (c <= 0x07FF)
+				length += 2;
+			else
+				length += 3;
+		}
+
+		return length;
+	}
+
+	/**
+	 * Update the expected duration of the step with a new duration
+	 *
+	 * @param code
+	 * @param duration
+	 */
+	private void update(String code, long duration) {
+
+		Double current = this.expected.get(code);
+
+		if (current == null)
+			this.expected.put(code, (double) duration);
+		else
+			this.expected.put(code, current + WEIGHT * (duration - current));
+	}
+
+	/**
+	 * Get the expected duration of a step, weighting more the recent runs
+	 *
+	 * @param code code of the step
+	 * @return milliseconds, -1 if the step was never executed
+	 */
+	public double getExpectedTime(String code) {
+
+		Double time = this.expected.get(code);
+
+		if (time == null)
+			return -1;
+
+		return time;
+	}
+
+	/**
+	 * Add the duration of an execution of a step and store it in the file. It
+	 * can be called by several threads.
+	 *
+	 * @param code     code of the step
+	 * @param duration milliseconds
+	 */
+	public synchronized void record(String code, long duration) {
+
+		update(code, duration);
+
+		// too many old records, store only the current estimates
+		if (this.records + 1 > COMPACT_FACTOR * this.expected.size()) {
+			compact();
+			return;
+		}
+
+		try (OutputStream output = Files.newOutputStream(this.file, StandardOpenOption.CREATE,
+				StandardOpenOption.APPEND);
+				DataOutputStream data = new DataOutputStream(new BufferedOutputStream(output));) {
+
+			data.writeUTF(code);
+			data.writeLong(duration);
+
+			this.records++;
+
+		} catch (IOException e) {
+			LOGGER.error("Cannot store the progress step history " + this.file, e);
+		}
+	}
+
+	/**
+	 * Rewrite the file with a single record for each step
+	 */
+	private void compact() {
+
+		Path temp = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+
+		try {
+
+			try (OutputStream output = Files.newOutputStream(temp);
+					DataOutputStream data = new DataOutputStream(new BufferedOutputStream(output));) {
+
+				for (Map.Entry<String, Double> entry : this.expected.entrySet()) {
+					data.writeUTF(entry.getKey());
+					data.writeLong(Math.round(entry.getValue()));
+				}
+			}
+
+			Files.move(temp, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+			this.records = this.expected.size();
+
+		} catch (IOException e) {
+			LOGGER.error("Cannot compact the progress step history " + this.file, e);
+		}
+	}
+
+	/**
+	 * Get the file where the history is stored
+	 *
+	 * @return
+	 */
+	public Path getFile() {
+		return this.file;
+	}
+}
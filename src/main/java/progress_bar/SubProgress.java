@@ -0,0 +1,181 @@
+package progress_bar;
+
+/**
+ * Progress of a part of the work of a parent progress. The sub progress has
+ * its own scale (its total work) and converts each progress to the share of
+ * the parent progress it was assigned. This allows reporting the progress of
+ * nested operations without knowing the scale of the top level progress:
+ *
+ * <pre>
+ * SubProgress progress = new SubProgress(bar, 100, 2); // all the bar, 2 parts
+ * SubProgress parse = progress.split(1, files.size()); // half of the bar
+ * for (File file : files) {
+ * 	parse(file);
+ * 	parse.addProgress(1);
+ * }
+ * </pre>
+ *
+ * Sub progresses can be split again to any depth. A sub progress can be reused
+ * with {@link #reset(double, double)}, so that a loop can report the progress
+ * of its iterations without allocating a new sub progress each time.
+ *
+ * A sub progress never reports more than its share to the parent. It is not
+ * thread safe: the parent can be shared among threads (for example a
+ * {@link ProgressModel}), but each thread should use its own sub progress.
+ */
+public class SubProgress implements IProgress {
+
+	private IProgress parent;
+	private double parentWork; // share of the parent progress
+	private double totalWork; // total work of this progress, in its own units
+	private double scale; // parent progress for a unit of work
+	private double reported; // parent progress already reported
+
+	/**
+	 * Create a sub progress
+	 *
+	 * @param parent     the parent progress
+	 * @param parentWork the share of the parent progress that this one represents,
+	 *                   in the units of the parent
+	 * @param totalWork  the total work of this progress, in its own units
+	 */
+	public SubProgress(IProgress parent, double parentWork, double totalWork) {
+		this.parent = parent;
+		reset(parentWork, totalWork);
+	}
+
+	/**
+	 * Reuse the sub progress for another part of the work of the parent
+	 *
+	 * @param parentWork the share of the parent progress that this one represents,
+	 *                   in the units of the parent
+	 * @param totalWork  the total work of this progress, in its own units
+	 */
+	public void reset(double parentWork, double totalWork) {
+		this.parentWork = parentWork;
+		this.totalWork = totalWork;
+		this.scale = totalWork > 0 ? parentWork / totalWork : 0;
+		this.reported = 0;
+	}
+
+	/**
+	 * Create a child progress which represents a part of the work of this
+	 * progress. The child uses the same units of this progress.
+	 *
+	 * @param work the work of this progress assigned to the child
+	 * @return
+	 */
+	public SubProgress split(double work) {
+		return split(work, work);
+	}
+
+	/**
+	 * Create a child progress which represents a part of the work of this
+	 * progress.
+	 *
+	 * @param work      the work of this progress assigned to the child
+	 * @param childWork the total work of the child, in its own units
+	 * @return
+	 */
+	public SubProgress split(double work, double childWork) {
+		return new SubProgress(this, work, childWork);
+	}
+
+	/**
+	 * Reuse a child progress for another part of the work of this progress.
+	 * Allocation free version of {@link #split(double, double)}.
+	 *
+	 * @param child     a child previously created with {@link #split(double)}
+	 * @param work      the work of this progress assigned to the child
+	 * @param childWork the total work of the child, in its own units
+	 * @return the child
+	 */
+	public SubProgress split(SubProgress child, double work, double childWork) {
+		child.parent = this;
+		child.reset(work, childWork);
+		return child;
+	}
+
+	/**
+	 * Change the work still to do. The share of the parent not yet reported is
+	 * distributed on the new remaining work. Used when the amount of work is
+	 * discovered while working.
+	 *
+	 * @param remaining the work still to do, in the units of this progress
+	 */
+	public void setWorkRemaining(double remaining) {
+
+		double parentRemaining = this.parentWork - this.reported;
+
+		// restart the scale from what was already done
+		this.parentWork = parentRemaining;
+		this.totalWork = remaining;
+		this.scale = remaining > 0 ? parentRemaining / remaining : 0;
+		this.reported = 0;
+	}
+
+	/**
+	 * Add a progress, in the units of this progress
+	 */
+	@Override
+	public void addProgress(double progress) {
+
+		double amount = progress * this.scale;
+
+		// never report more than the share of the parent
+		if (this.reported + amount > this.parentWork)
+			amount = this.parentWork - this.reported;
+
+		if (amount <= 0)
+			return;
+
+		this.reported = this.reported + amount;
+		this.parent.addProgress(amount);
+	}
+
+	/**
+	 * Report to the parent all the share not yet reported
+	 */
+	@Override
+	public void fillToMax() {
+
+		double amount = this.parentWork - this.reported;
+
+		if (amount <= 0)
+			return;
+
+		this.reported = this.parentWork;
+		this.parent.addProgress(amount);
+	}
+
+	@Override
+	public void setLabel(String label) {
+		this.parent.setLabel(label);
+	}
+
+	@Override
+	public void stop(Exception exception) {
+		this.parent.stop(exception);
+	}
+
+	/**
+	 * Listeners are added to the parent progress
+	 */
+	@Override
+	public void addProgressListener(ProgressListener listener) {
+		this.parent.addProgressListener(listener);
+	}
+
+	@Override
+	public void removeProgressListener(ProgressListener listener) {
+		this.parent.removeProgressListener(listener);
+	}
+
+	/**
+	 * The sub progress is cancelled with its parent
+	 */
+	@Override
+	public CancellationToken getCancellationToken() {
+		return this.parent.getCancellationToken();
+	}
+}
@@ -1,12 +1,21 @@
 package progress_bar;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.custom.TableEditor;
+import org.eclipse.swt.graphics.Color;
+import org.eclipse.swt.graphics.GC;
 import org.eclipse.swt.layout.GridData;
 import org.eclipse.swt.widgets.Composite;
-import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Listener;
 import org.eclipse.swt.widgets.Table;
 import org.eclipse.swt.widgets.TableColumn;
 import org.eclipse.swt.widgets.TableItem;
@@ -17,6 +26,11 @@ import messages.Messages;
  * Table used to show several processes progresses. See
  * {@link FormMultipleProgress} to get more details.
  * 
+ * In virtual mode no widget is created for the rows: the table
+ * only contains the visible items and the progress of each one
+ * is drawn directly in the cell, taking it from the row model.
+ * Use this mode to show thousands of rows.
+ * 
  * @author avonva
  *
  */
@@ -26,9 +40,24 @@ public class TableMultipleProgress {
 
 	private Composite parent;
 	private Table table;
+	private boolean virtual;
+	private List<TableRow> rows; // rows model, shown from it in virtual mode
 
 	public TableMultipleProgress(Composite parent) {
+		this(parent, false);
+	}
+
+	/**
+	 * Create the table
+	 * 
+	 * @param parent
+	 * @param virtual true to use a virtual table with the progress drawn in the
+	 *                cells instead of a progress bar widget for each row
+	 */
+	public TableMultipleProgress(Composite parent, boolean virtual) {
 		this.parent = parent;
+		this.virtual = virtual;
+		this.rows = new ArrayList<>();
 		createTable();
 	}
 
@@ -40,8 +69,13 @@ public class TableMultipleProgress {
 	 */
 	private void createTable() {
 
+		int style = SWT.BORDER | SWT.FULL_SELECTION | SWT.V_SCROLL;
+
+		if (this.virtual)
+			style = style | SWT.VIRTUAL;
+
 		// create table
-		this.table = new Table(this.parent, SWT.BORDER | SWT.FULL_SELECTION | SWT.V_SCROLL);
+		this.table = new Table(this.parent, style);
 		this.table.setHeaderVisible(true);
 		this.table.setLinesVisible(true);
 
@@ -50,13 +84,83 @@ public class TableMultipleProgress {
 
 		// col titles
 		String[] titles = { Messages.getString("ProgressTable.TaskCol"),
-				Messages.getString("ProgressTable.ProgressCol"), Messages.getString("ProgressTable.StatusCol") };
+				Messages.getString("ProgressTable.ProgressCol"), Messages.getString("ProgressTable.StatusCol"),
+				Messages.getString("ProgressTable.RateCol") };
 
-		// add 3 columns and set name
-		for (int i = 0; i < 3; i++) {
+		// add 4 columns and set name
+		for (int i = 0; i < 4; i++) {
 			TableColumn col = new TableColumn(this.table, SWT.NONE);
 			col.setText(titles[i]);
 		}
+
+		if (this.virtual) {
+
+			// the columns cannot be packed on the content, since
+			// the items are created only when they become visible
+			this.table.getColumn(0).setWidth(192);
+			this.table.getColumn(1).setWidth(128);
+			this.table.getColumn(2).setWidth(256);
+			this.table.getColumn(3).setWidth(160);
+
+			// fill the items only when they are shown
+			this.table.addListener(SWT.SetData, new Listener() {
+
+				@Override
+				public void handleEvent(Event event) {
+
+					TableItem item = (TableItem) event.item;
+					TableRow row = TableMultipleProgress.this.rows.get(event.index);
+
+					item.setData(row);
+					item.setText(0, row.name);
+					item.setText(2, row.status);
+					item.setText(3, row.rate);
+				}
+			});
+
+			// draw the progress in the progress column
+			this.table.addListener(SWT.PaintItem, new Listener() {
+
+				@Override
+				public void handleEvent(Event event) {
+
+					if (event.index != 1)
+						return;
+
+					TableRow row = (TableRow) event.item.getData();
+
+					if (row != null)
+						paintProgress(event, row.getModel().getProgress());
+				}
+			});
+		}
+	}
+
+	/**
+	 * Draw a progress bar in the cell of the event
+	 * 
+	 * @param event    paint event of the cell
+	 * @param progress progress from 0 to 100
+	 */
+	private void paintProgress(Event event, int progress) {
+
+		GC gc = event.gc;
+		Display display = this.table.getDisplay();
+
+		int width = this.table.getColumn(1).getWidth() - 4;
+		int height = event.height - 5;
+
+		Color foreground = gc.getForeground();
+		Color background = gc.getBackground();
+
+		gc.setBackground(display.getSystemColor(SWT.COLOR_LIST_SELECTION));
+		gc.fillRectangle(event.x + 2, event.y + 2, width * progress / 100, height);
+
+		gc.setForeground(display.getSystemColor(SWT.COLOR_WIDGET_NORMAL_SHADOW));
+		gc.drawRectangle(event.x + 2, event.y + 2, width - 1, height);
+
+		gc.setForeground(foreground);
+		gc.setBackground(background);
 	}
 
 	/**
@@ -66,17 +170,89 @@ public class TableMultipleProgress {
 	 */
 	public TableRow addRow(String taskName) {
 
+		// only add the row to the model, the item will
+		// be filled when it becomes visible
+		if (this.virtual) {
+
+			TableRow row = new TableRow(this.table, taskName, this.rows.size());
+			this.rows.add(row);
+			this.table.setItemCount(this.rows.size());
+
+			LOGGER.debug("Table row ", row);
+			return row;
+		}
+
 		// for each step add a record with bar
 		TableRow row = new TableRow(this.table, taskName);
+		this.rows.add(row);
 
-		this.table.getColumn(0).pack();
-		this.table.getColumn(1).setWidth(128);
-		this.table.getColumn(2).setWidth(256);
+		layoutColumns();
 
 		LOGGER.debug("Table row ", row);
 		return row;
 	}
 
+	/**
+	 * Add several rows to the table at once. The table is redrawn and its
+	 * columns are laid out only once, after all the rows were added.
+	 * 
+	 * @param taskNames names of the tasks, one row for each
+	 * @return the rows created, in the same order of the names
+	 */
+	public List<TableRow> addRows(Collection<String> taskNames) {
+
+		List<TableRow> added = new ArrayList<>(taskNames.size());
+
+		if (this.virtual) {
+
+			for (String taskName : taskNames) {
+				TableRow row = new TableRow(this.table, taskName, this.rows.size());
+				this.rows.add(row);
+				added.add(row);
+			}
+
+			this.table.setItemCount(this.rows.size());
+
+			LOGGER.debug("Added " + added.size() + " table rows");
+			return added;
+		}
+
+		this.table.setRedraw(false);
+
+		try {
+
+			for (String taskName : taskNames)
+				added.add(new TableRow(this.table, taskName));
+
+			this.rows.addAll(added);
+
+			layoutColumns();
+		} finally {
+			this.table.setRedraw(true);
+		}
+
+		LOGGER.debug("Added " + added.size() + " table rows");
+		return added;
+	}
+
+	/**
+	 * Cancel the processes of all the rows, see {@link TableRow#cancel()}
+	 */
+	public void cancelAll() {
+		for (TableRow row : this.rows)
+			row.cancel();
+	}
+
+	/**
+	 * Fit the columns to the content of the table
+	 */
+	private void layoutColumns() {
+		this.table.getColumn(0).pack();
+		this.table.getColumn(1).setWidth(128);
+		this.table.getColumn(2).setWidth(256);
+		this.table.getColumn(3).setWidth(160);
+	}
+
 	/**
 	 * Class which represents a row in the table
 	 * 
@@ -91,22 +267,59 @@ public class TableMultipleProgress {
 		public static String COMPLETED = Messages.getString("ProgressTable.Completed");
 		public static String ABORTED = Messages.getString("ProgressTable.Aborted");
 
-		private Shell shell;
 		private String name;
 		private String status;
+		private String rate; // rate and time to complete shown
 		private CustomProgressBar bar;
+		private ProgressModel model;
 		private Table table;
 		private TableItem row;
 		private TableEditor editor;
+		private int index; // index in the virtual table, -1 otherwise
+
+		private final AtomicReference<String> pendingStatus; // last status requested
+		private UpdateDispatcher dispatcher;
+
+		/**
+		 * Shows the last status set. Applied in the ui thread.
+		 */
+		private final UpdateDispatcher.Update refresher = new UpdateDispatcher.Update() {
+			@Override
+			public void apply() {
+				refresh();
+			}
+		};
 
 		public TableRow(Table table, String name) {
 			this.name = name;
 			this.status = READY;
+			this.rate = "";
+			this.pendingStatus = new AtomicReference<>(READY);
 			this.table = table;
-			this.shell = table.getShell();
+			this.dispatcher = UpdateDispatcher.get(table.getDisplay());
+			this.index = -1;
 			display();
 		}
 
+		/**
+		 * Create a row of a virtual table, without any widget
+		 * 
+		 * @param table
+		 * @param name
+		 * @param index index of the row in the table
+		 */
+		TableRow(Table table, String name, int index) {
+			this.name = name;
+			this.status = READY;
+			this.rate = "";
+			this.pendingStatus = new AtomicReference<>(READY);
+			this.table = table;
+			this.dispatcher = UpdateDispatcher.get(table.getDisplay());
+			this.index = index;
+			this.model = new ProgressModel();
+			this.model.addProgressListener(createStatusUpdater());
+		}
+
 		public void display() {
 
 			this.row = new TableItem(this.table, SWT.NONE);
@@ -114,8 +327,26 @@ public class TableMultipleProgress {
 
 			// add progress bar
 			this.bar = new CustomProgressBar(this.table, SWT.NONE);
+			this.model = this.bar.getModel();
 
-			this.bar.addProgressListener(new ProgressListener() {
+			this.bar.addProgressListener(createStatusUpdater());
+
+			this.editor = new TableEditor(this.table);
+			this.editor.grabHorizontal = this.editor.grabVertical = true;
+			this.editor.setEditor(this.bar.getProgressBar(), this.row, 1);
+
+			// we are already in the ui thread
+			this.row.setText(2, this.status);
+		}
+
+		/**
+		 * Create the listener which updates the status according to the progress
+		 * 
+		 * @return
+		 */
+		private ProgressListener createStatusUpdater() {
+
+			return new ProgressListener() {
 
 				@Override
 				public void progressChanged(double currentProgress, double maxProgress) {
@@ -125,6 +356,10 @@ public class TableMultipleProgress {
 					} else {
 						setStatus(ONGOING);
 					}
+
+					// the progress of virtual rows is drawn in the item,
+					// the rate is shown in all the rows
+					markDirty();
 				}
 
 				@Override
@@ -141,39 +376,168 @@ public class TableMultipleProgress {
 				@Override
 				public void progressCompleted() {
 				}
-			});
-
-			this.editor = new TableEditor(this.table);
-			this.editor.grabHorizontal = this.editor.grabVertical = true;
-			this.editor.setEditor(this.bar.getProgressBar(), this.row, 1);
-
-			setStatus(this.status);
+			};
 		}
 
+		/**
+		 * Get the item of the row. Null for the rows of a virtual table.
+		 * 
+		 * @return
+		 */
 		public TableItem getRow() {
 			return this.row;
 		}
 
+		/**
+		 * Get the progress bar of the row. Null for the rows of a virtual table, use
+		 * {@link #getProgress()} instead.
+		 * 
+		 * @return
+		 */
 		public CustomProgressBar getBar() {
 			return this.bar;
 		}
 
+		/**
+		 * Get the progress of the row, which can be shared in threads and updated
+		 * directly by them. Available in all the modes of the table.
+		 * 
+		 * @return
+		 */
+		public IProgress getProgress() {
+			if (this.bar != null)
+				return this.bar;
+			return this.model;
+		}
+
+		/**
+		 * Get the progress model of the row
+		 * 
+		 * @return
+		 */
+		public ProgressModel getModel() {
+			return this.model;
+		}
+
+		/**
+		 * Get the name of the task shown in the row
+		 * 
+		 * @return
+		 */
+		public String getName() {
+			return this.name;
+		}
+
 		public TableEditor getEditor() {
 			return this.editor;
 		}
 
+		/**
+		 * Request to stop the process of the row. The process is notified through
+		 * the cancellation token of the row progress and the row is shown as
+		 * aborted.
+		 */
+		public void cancel() {
+			this.model.getCancellationToken().cancel();
+		}
+
+		/**
+		 * Get the token checked by the process of the row to know if it should stop
+		 * 
+		 * @return
+		 */
+		public CancellationToken getCancellationToken() {
+			return this.model.getCancellationToken();
+		}
+
+		/**
+		 * Publish the metrics of the row progress with {@link ProgressMetrics},
+		 * using the name of the row. Call it after the row is displayed.
+		 */
+		public void registerMetrics() {
+			this.model.registerMetrics(this.name);
+		}
+
+		public void unregisterMetrics() {
+			this.model.unregisterMetrics(this.name);
+		}
+
+		/**
+		 * Set the status of the row. It can be called by any thread, the row will be
+		 * refreshed in the ui thread together with the other rows that changed in the
+		 * meantime. Nothing is done if the status did not change, or if the row is
+		 * already completed or aborted (e.g. a late progress of a cancelled process
+		 * does not show it as ongoing again).
+		 * 
+		 * @param status
+		 */
 		public void setStatus(final String status) {
 
-			// guarantee that we are using the ui thread
-			// since this method is called by other threads
-			this.shell.getDisplay().asyncExec(new Runnable() {
+			while (true) {
 
-				@Override
-				public void run() {
-					TableRow.this.status = status;
-					TableRow.this.row.setText(2, status);
-				}
-			});
+				String current = this.pendingStatus.get();
+
+				// the status was already posted, or it is final
+				if (status.equals(current) || isFinal(current))
+					return;
+
+				if (this.pendingStatus.compareAndSet(current, status))
+					break;
+			}
+
+			markDirty();
+		}
+
+		/**
+		 * Check if the status is the last one of the row
+		 * 
+		 * @param status
+		 * @return
+		 */
+		private static boolean isFinal(String status) {
+			return status.equals(COMPLETED) || status.startsWith(ABORTED);
+		}
+
+		/**
+		 * Ask to refresh the row in the ui thread, together with
+		 * the other rows and bars which changed in the meantime
+		 */
+		private void markDirty() {
+			this.dispatcher.post(this.refresher);
+		}
+
+		/**
+		 * Show the last status set. Called in the ui thread.
+		 */
+		private void refresh() {
+
+			if (this.table.isDisposed())
+				return;
+
+			String status = this.pendingStatus.get();
+
+			String rate = this.model.getRateLabel();
+			if (rate == null)
+				rate = "";
+
+			// virtual table: refresh the item (also the progress)
+			// only if visible, otherwise it is filled when shown
+			if (this.index >= 0) {
+				this.status = status;
+				this.rate = rate;
+				this.table.clear(this.index);
+				return;
+			}
+
+			if (!status.equals(this.status)) {
+				this.status = status;
+				this.row.setText(2, status);
+			}
+
+			if (!rate.equals(this.rate)) {
+				this.rate = rate;
+				this.row.setText(3, rate);
+			}
 		}
 	}
 }
@@ -0,0 +1,217 @@
+package progress_bar;
+
+import java.util.Collection;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Counts the tasks of a process made of many asynchronous tasks: how many are
+ * queued (waiting to be executed), running, done and failed. The tasks are
+ * tracked by a {@link ProgressExecutorService} or, for futures created
+ * elsewhere, with {@link #track(CompletableFuture, IProgress)}.
+ *
+ * The tracker can show the overall progress in a {@link ProgressModel} (e.g.
+ * the model of a bar, see {@link CustomProgressBar#getModel()}): the progress
+ * is the percentage of the finished tasks over the tasks submitted so far. It
+ * is updated only when the percentage changes. Each task can also have its own
+ * progress (e.g. the progress of a row of {@link TableMultipleProgress}),
+ * which is filled when the task is done and stopped when it fails.
+ */
+public class TaskTracker {
+
+	private ProgressModel overall;
+	private AtomicInteger submitted;
+	private AtomicInteger started; // running or finished
+	private AtomicInteger done;
+	private AtomicInteger failed;
+	private volatile int shown; // percentage shown in the overall progress
+
+	/**
+	 * Create a tracker which only counts the tasks
+	 */
+	public TaskTracker() {
+		this(null);
+	}
+
+	/**
+	 * Create a tracker
+	 *
+	 * @param overall progress where the percentage of finished tasks is shown,
+	 *                null for none
+	 */
+	public TaskTracker(ProgressModel overall) {
+		this.overall = overall;
+		this.submitted = new AtomicInteger();
+		this.started = new AtomicInteger();
+		this.done = new AtomicInteger();
+		this.failed = new AtomicInteger();
+		this.shown = -1;
+	}
+
+	/**
+	 * Track a future created elsewhere. The future counts as queued until it is
+	 * completed, then as done or failed (also if cancelled).
+	 *
+	 * @param future
+	 * @param progress progress of the task, null for none
+	 * @return the future
+	 */
+	public <T> CompletableFuture<T> track(CompletableFuture<T> future, final IProgress progress) {
+
+		submitted();
+
+		future.whenComplete(new BiConsumer<T, Throwable>() {
+			@Override
+			public void accept(T result, Throwable failure) {
+				finished(false, failure, progress);
+			}
+		});
+
+		return future;
+	}
+
+	/**
+	 * Track all the futures and combine them
+	 *
+	 * @param futures
+	 * @return a future completed when all the futures are completed
+	 */
+	public CompletableFuture<Void> trackAll(Collection<? extends CompletableFuture<?>> futures) {
+
+		for (CompletableFuture<?> future : futures)
+			track(future, null);
+
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()]));
+	}
+
+	/**
+	 * A task was submitted, it is queued
+	 */
+	void submitted() {
+		this.submitted.incrementAndGet();
+	}
+
+	/**
+	 * A queued task was not accepted by the executor
+	 */
+	void rejected() {
+		this.submitted.decrementAndGet();
+		showProgress();
+	}
+
+	/**
+	 * A queued task started
+	 */
+	void started() {
+		this.started.incrementAndGet();
+	}
+
+	/**
+	 * A task finished
+	 *
+	 * @param started  if it was running (otherwise it was queued)
+	 * @param failure  the exception, null if done
+	 * @param progress progress of the task, null for none
+	 */
+	void finished(boolean started, Throwable failure, IProgress progress) {
+
+		// finished without running, e.g. cancelled
+		if (!started)
+			this.started.incrementAndGet();
+
+		if (failure == null)
+			this.done.incrementAndGet();
+		else
+			this.failed.incrementAndGet();
+
+		showProgress();
+
+		if (progress == null)
+			return;
+
+		if (failure == null)
+			progress.fillToMax();
+		else
+			progress.stop(toException(failure));
+	}
+
+	/**
+	 * Show the percentage of finished tasks in the overall progress, if it
+	 * changed
+	 */
+	private void showProgress() {
+
+		if (this.overall == null || getPercentage() == this.shown)
+			return;
+
+		// computed again in the lock, to never show an older percentage
+		synchronized (this) {
+
+			int percentage = getPercentage();
+
+			if (percentage == this.shown)
+				return;
+
+			this.shown = percentage;
+			this.overall.setProgress(percentage);
+		}
+	}
+
+	private int getPercentage() {
+
+		int submitted = this.submitted.get();
+
+		if (submitted == 0)
+			return 0;
+
+		return (int) ((this.done.get() + this.failed.get()) * 100L / submitted);
+	}
+
+	private static Exception toException(Throwable failure) {
+
+		// the futures wrap the exception of the task
+		if (failure instanceof CompletionException && failure.getCause() != null)
+			failure = failure.getCause();
+
+		if (failure instanceof Exception)
+			return (Exception) failure;
+
+		CancellationException exception = new CancellationException(failure.getMessage());
+		exception.initCause(failure);
+		return exception;
+	}
+
+	public int getSubmitted() {
+		return this.submitted.get();
+	}
+
+	public int getQueued() {
+		int started = this.started.get();
+		return this.submitted.get() - started;
+	}
+
+	public int getRunning() {
+		int finished = this.done.get() + this.failed.get();
+		return this.started.get() - finished;
+	}
+
+	public int getDone() {
+		return this.done.get();
+	}
+
+	public int getFailed() {
+		return this.failed.get();
+	}
+
+	/**
+	 * Check if all the tasks submitted are finished
+	 *
+	 * @return
+	 */
+	public boolean isIdle() {
+		return getQueued() == 0 && getRunning() == 0;
+	}
+}
@@ -0,0 +1,55 @@
+package progress_bar;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cancellation callback which interrupts the thread that created it, only
+ * while the work of that thread is running. Once {@link #close()} is called
+ * the thread is not interrupted anymore, and an interruption caused by this
+ * callback is cleared, so that it does not reach the next task executed by
+ * the thread (e.g. in a pool).
+ */
+class ThreadInterrupter implements Runnable {
+
+	private static final int RUNNING = 0;
+	private static final int INTERRUPTING = 1;
+	private static final int DONE = 2;
+
+	private final Thread thread;
+	private final AtomicInteger state;
+
+	public ThreadInterrupter() {
+		this.thread = Thread.currentThread();
+		this.state = new AtomicInteger(RUNNING);
+	}
+
+	@Override
+	public void run() {
+
+		if (!this.state.compareAndSet(RUNNING, INTERRUPTING))
+			return;
+
+		try {
+			this.thread.interrupt();
+		} finally {
+			this.state.set(DONE);
+		}
+	}
+
+	/**
+	 * Stop interrupting the thread, clearing the interruption if it was
+	 * interrupted by this callback. Call it in the interrupted thread.
+	 */
+	public void close() {
+
+		// never interrupted
+		if (this.state.compareAndSet(RUNNING, DONE))
+			return;
+
+		// the interruption is being delivered, wait for it before clearing
+		while (this.state.get() == INTERRUPTING)
+			Thread.yield();
+
+		Thread.interrupted();
+	}
+}
@@ -0,0 +1,47 @@
+package progress_bar;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Resources used by the current thread, read from the thread MXBean.
+ * The values are -1 when the JVM does not measure them.
+ */
+class ThreadMetrics {
+
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+	// allocations are only measured by the HotSpot bean
+	private static final com.sun.management.ThreadMXBean ALLOCATIONS = THREADS instanceof com.sun.management.ThreadMXBean
+			? (com.sun.management.ThreadMXBean) THREADS
+			: null;
+
+	private ThreadMetrics() {}
+
+	/**
+	 * Get the cpu time used by the current thread
+	 *
+	 * @return nanoseconds, -1 if not measured
+	 */
+	public static long getCpuTime() {
+
+		if (!THREADS.isCurrentThreadCpuTimeSupported() || !THREADS.isThreadCpuTimeEnabled())
+			return -1;
+
+		return THREADS.getCurrentThreadCpuTime();
+	}
+
+	/**
+	 * Get the bytes allocated by the current thread so far
+	 *
+	 * @return bytes, -1 if not measured
+	 */
+	public static long getAllocatedBytes() {
+
+		if (ALLOCATIONS == null || !ALLOCATIONS.isThreadAllocatedMemorySupported()
+				|| !ALLOCATIONS.isThreadAllocatedMemoryEnabled())
+			return -1;
+
+		return ALLOCATIONS.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
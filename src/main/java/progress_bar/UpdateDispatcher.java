@@ -0,0 +1,254 @@
+package progress_bar;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * Applies in the ui thread the graphical updates requested by the progress
+ * bars, labels and table rows of a {@link Display}. The updates requested by
+ * any thread are collected and applied together by a single runnable, at most
+ * once every frame interval and at most {@link #getFrameBudget()} updates per
+ * frame (the remaining ones are applied in the next frames). An update
+ * requested several times before being applied is applied only once. The
+ * updates are applied in the order they were requested, so that with many
+ * bars the ones which did not fit in a frame come first in the next one.
+ *
+ * There is a single dispatcher for each display, see {@link #get(Display)}.
+ * Dispatchers not bound to a display (e.g. headless ones, to measure the cost
+ * of the updates without a graphical environment) are created with
+ * {@link #create(UiExecutor)}.
+ */
+public class UpdateDispatcher implements Runnable {
+
+	private static final Logger LOGGER = LogManager.getLogger(UpdateDispatcher.class);
+
+	public static final int DEFAULT_FRAME_INTERVAL = 16; // ms
+	public static final int DEFAULT_FRAME_BUDGET = 512; // updates per frame
+
+	private static final Map<Display, UpdateDispatcher> DISPATCHERS = new ConcurrentHashMap<>();
+
+	/**
+	 * Graphical update, applied in the ui thread. The update should read the
+	 * latest state to show when it is applied.
+	 */
+	public interface Update {
+		public void apply();
+	}
+
+	/**
+	 * Thread where the updates are applied, as the ui thread of a display
+	 */
+	public interface UiExecutor {
+
+		/**
+		 * Execute the runnable in the ui thread, as soon as possible
+		 */
+		public void asyncExec(Runnable runnable);
+
+		/**
+		 * Execute the runnable in the ui thread after the delay
+		 */
+		public void timerExec(int millis, Runnable runnable);
+
+		public boolean isDisposed();
+	}
+
+	private UiExecutor ui;
+	private Queue<Update> dirty; // in order of request
+	private Set<Update> queued; // the updates in the queue, without duplicates
+	private AtomicBoolean scheduled;
+	private volatile int frameInterval;
+	private volatile int frameBudget;
+	private long lastFrame; // accessed only by the ui thread
+
+	private UpdateDispatcher(UiExecutor ui) {
+		this.ui = ui;
+		this.dirty = new ConcurrentLinkedQueue<>();
+		this.queued = ConcurrentHashMap.newKeySet();
+		this.scheduled = new AtomicBoolean();
+		this.frameInterval = DEFAULT_FRAME_INTERVAL;
+		this.frameBudget = DEFAULT_FRAME_BUDGET;
+	}
+
+	/**
+	 * Get the dispatcher of the display, creating it if needed
+	 *
+	 * @param display
+	 * @return
+	 */
+	public static UpdateDispatcher get(final Display display) {
+
+		UpdateDispatcher dispatcher = DISPATCHERS.get(display);
+
+		if (dispatcher != null)
+			return dispatcher;
+
+		dispatcher = new UpdateDispatcher(new DisplayExecutor(display));
+
+		UpdateDispatcher current = DISPATCHERS.putIfAbsent(display, dispatcher);
+		if (current != null)
+			return current;
+
+		// forget the dispatcher when the display is disposed
+		display.asyncExec(new Runnable() {
+			@Override
+			public void run() {
+				display.disposeExec(new Runnable() {
+					@Override
+					public void run() {
+						DISPATCHERS.remove(display);
+					}
+				});
+			}
+		});
+
+		return dispatcher;
+	}
+
+	/**
+	 * Create a dispatcher which applies the updates with the executor instead of
+	 * the ui thread of a display. It is not shared.
+	 *
+	 * @param ui
+	 * @return
+	 */
+	public static UpdateDispatcher create(UiExecutor ui) {
+		return new UpdateDispatcher(ui);
+	}
+
+	/**
+	 * Request to apply the update in the ui thread. It can be called by any
+	 * thread and it never blocks.
+	 *
+	 * @param update
+	 */
+	public void post(Update update) {
+
+		// already waiting, it will show the latest state
+		if (this.queued.add(update))
+			this.dirty.add(update);
+
+		if (this.scheduled.compareAndSet(false, true))
+			schedule();
+	}
+
+	/**
+	 * Post the runnable in the ui thread
+	 */
+	private void schedule() {
+
+		if (this.ui.isDisposed()) {
+			this.scheduled.set(false);
+			return;
+		}
+
+		this.ui.asyncExec(this);
+	}
+
+	@Override
+	public void run() {
+
+		long now = System.nanoTime();
+		long wait = this.frameInterval - TimeUnit.NANOSECONDS.toMillis(now - this.lastFrame);
+
+		// too early, postpone the frame (still collecting updates)
+		if (this.lastFrame != 0 && wait > 0) {
+			this.ui.timerExec((int) wait, this);
+			return;
+		}
+
+		this.lastFrame = now;
+
+		// release the flag before applying the updates, in this
+		// way an update posted in the meantime schedules a new frame
+		this.scheduled.set(false);
+
+		int budget = this.frameBudget;
+
+		for (; budget > 0; budget--) {
+
+			Update update = this.dirty.poll();
+
+			if (update == null)
+				break;
+
+			// remove before applying, if it is posted again
+			// it will be applied again after the waiting ones
+			this.queued.remove(update);
+
+			try {
+				update.apply();
+			} catch (RuntimeException e) {
+				LOGGER.error("Cannot apply the progress update", e);
+			}
+		}
+
+		// budget exhausted, continue in the next frame
+		if (!this.dirty.isEmpty() && this.scheduled.compareAndSet(false, true))
+			this.ui.timerExec(this.frameInterval, this);
+	}
+
+	/**
+	 * Set the minimum interval between two frames. Updates requested in the
+	 * meantime are collected and applied together.
+	 *
+	 * @param frameInterval interval in milliseconds, 0 to apply the updates as
+	 *                      soon as the ui thread is available
+	 */
+	public void setFrameInterval(int frameInterval) {
+		this.frameInterval = Math.max(0, frameInterval);
+	}
+
+	public int getFrameInterval() {
+		return this.frameInterval;
+	}
+
+	/**
+	 * Set the maximum number of updates applied in a single frame
+	 *
+	 * @param frameBudget
+	 */
+	public void setFrameBudget(int frameBudget) {
+		this.frameBudget = Math.max(1, frameBudget);
+	}
+
+	public int getFrameBudget() {
+		return this.frameBudget;
+	}
+
+	/**
+	 * Applies the updates in the ui thread of a display
+	 */
+	private static class DisplayExecutor implements UiExecutor {
+
+		private Display display;
+
+		public DisplayExecutor(Display display) {
+			this.display = display;
+		}
+
+		@Override
+		public void asyncExec(Runnable runnable) {
+			this.display.asyncExec(runnable);
+		}
+
+		@Override
+		public void timerExec(int millis, Runnable runnable) {
+			this.display.timerExec(millis, runnable);
+		}
+
+		@Override
+		public boolean isDisposed() {
+			return this.display.isDisposed();
+		}
+	}
+}
@@ -0,0 +1,240 @@
+package progress_bar;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+
+/**
+ * StAX reader which reports a progress for each record of an xml file. The
+ * records are the elements with the given names (e.g. the result elements of a
+ * DCF dataset). The records are counted while the caller reads the file, no
+ * document is built in memory:
+ *
+ * <pre>
+ * long total = XmlProgressReader.countRecords(file, "result");
+ * XMLStreamReader reader = new XmlProgressReader(factory.createXMLStreamReader(input), bar, 100, total,
+ * 		"result");
+ * while (reader.hasNext()) {
+ * 	reader.next();
+ * 	...
+ * }
+ * </pre>
+ *
+ * The total number of records can be counted exactly with a fast scan of the
+ * bytes of the file ({@link #countRecords(File, String...)}) or estimated from
+ * the first part of the file ({@link #estimateRecords(File, long, String...)}).
+ * If the estimate is too low, the progress stops at its share until the end of
+ * the document, which completes it.
+ */
+public class XmlProgressReader extends StreamReaderDelegate {
+
+	public static final long DEFAULT_SAMPLE = 4 * 1024 * 1024; // bytes scanned for the estimate
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private String[] recordNames;
+	private ByteProgress records;
+
+	/**
+	 * Wrap a reader
+	 *
+	 * @param reader       the reader of the xml
+	 * @param progress     where the records are reported
+	 * @param work         progress corresponding to all the records
+	 * @param totalRecords expected number of records
+	 * @param recordNames  local names of the record elements
+	 */
+	public XmlProgressReader(XMLStreamReader reader, IProgress progress, double work, long totalRecords,
+			String... recordNames) {
+		super(reader);
+		this.recordNames = recordNames;
+
+		// about one report for each thousandth of the records
+		this.records = new ByteProgress(progress, totalRecords, work, totalRecords / ByteProgress.BATCHES);
+	}
+
+	@Override
+	public int next() throws XMLStreamException {
+		return count(super.next());
+	}
+
+	@Override
+	public int nextTag() throws XMLStreamException {
+		return count(super.nextTag());
+	}
+
+	/**
+	 * Count the event if it is the start of a record
+	 *
+	 * @param event
+	 * @return the event
+	 */
+	private int count(int event) {
+
+		if (event == XMLStreamConstants.START_ELEMENT) {
+
+			String name = getLocalName();
+
+			for (String recordName : this.recordNames) {
+				if (recordName.equals(name)) {
+					this.records.add(1);
+					break;
+				}
+			}
+		} else if (event == XMLStreamConstants.END_DOCUMENT) {
+			this.records.finish();
+		}
+
+		return event;
+	}
+
+	/**
+	 * Get the number of records read
+	 *
+	 * @return
+	 */
+	public long getRecordCount() {
+		return this.records.getPosition();
+	}
+
+	/**
+	 * Count the records of the file by scanning its bytes for the start tags of
+	 * the records, without parsing the xml. Start tags in comments or CDATA
+	 * sections are counted as well. The file must use an encoding compatible with
+	 * ASCII for the tags (e.g. UTF-8 or ISO-8859-1).
+	 *
+	 * @param file
+	 * @param recordNames local names of the record elements (without prefix)
+	 * @return the number of records
+	 * @throws IOException
+	 */
+	public static long countRecords(File file, String... recordNames) throws IOException {
+		return scan(file, Long.MAX_VALUE, recordNames);
+	}
+
+	/**
+	 * Estimate the records of the file, counting them in its first bytes and
+	 * assuming that they have the same size in the rest of the file
+	 *
+	 * @param file
+	 * @param sample      bytes to scan, see {@link #DEFAULT_SAMPLE}
+	 * @param recordNames local names of the record elements (without prefix)
+	 * @return the estimated number of records
+	 * @throws IOException
+	 */
+	public static long estimateRecords(File file, long sample, String... recordNames) throws IOException {
+
+		long size = file.length();
+
+		if (size <= sample)
+			return scan(file, Long.MAX_VALUE, recordNames);
+
+		long count = scan(file, sample, recordNames);
+
+		return Math.round((double) count * size / sample);
+	}
+
+	/**
+	 * Count the start tags of the records in the first bytes of the file
+	 *
+	 * @param file
+	 * @param limit       maximum bytes to scan
+	 * @param recordNames
+	 * @return
+	 * @throws IOException
+	 */
+	private static long scan(File file, long limit, String... recordNames) throws IOException {
+
+		byte[][] names = new byte[recordNames.length][];
+		for (int i = 0; i < recordNames.length; i++)
+			names[i] = recordNames[i].getBytes(StandardCharsets.UTF_8);
+
+		long count = 0;
+		long scanned = 0;
+
+		// bytes after the last '<', compared with the names
+		int longest = 0;
+		for (byte[] name : names)
+			longest = Math.max(longest, name.length);
+
+		byte[] tag = new byte[longest + 1];
+		int tagLength = -1; // -1 if not inside a tag name
+
+		try (InputStream input = new FileInputStream(file);) {
+
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int read;
+
+			while (scanned < limit && (read = input.read(buffer)) > 0) {
+
+				int end = (int) Math.min(read, limit - scanned);
+
+				for (int i = 0; i < end; i++) {
+
+					byte b = buffer[i];
+
+					if (b == '<') {
+						tagLength = 0;
+						continue;
+					}
+
+					if (tagLength < 0)
+						continue;
+
+					// end of the name of the tag
+					if (b == '>' || b == '/' || b == ' ' || b == '\t' || b == '\n' || b == '\r') {
+
+						if (matches(tag, tagLength, names))
+							count++;
+
+						tagLength = -1;
+						continue;
+					}
+
+					// skip the prefix of the name
+					if (b == ':') {
+						tagLength = 0;
+						continue;
+					}
+
+					// too long for a record
+					if (tagLength == tag.length) {
+						tagLength = -1;
+						continue;
+					}
+
+					tag[tagLength++] = b;
+				}
+
+				scanned = scanned + end;
+			}
+		}
+
+		return count;
+	}
+
+	private static boolean matches(byte[] tag, int length, byte[][] names) {
+
+		for (byte[] name : names) {
+
+			if (name.length != length)
+				continue;
+
+			boolean equal = true;
+			for (int i = 0; i < length && equal; i++)
+				equal = tag[i] == name[i];
+
+			if (equal)
+				return true;
+		}
+
+		return false;
+	}
+}
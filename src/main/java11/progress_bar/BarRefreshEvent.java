@@ -0,0 +1,26 @@
+package progress_bar;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Refresh of a {@link CustomProgressBar} in the ui thread
+ */
+@Name("progress_bar.BarRefresh")
+@Label("Progress Bar Refresh")
+@Category("Progress Bar")
+@Description("Refresh of a progress bar in the ui thread")
+@StackTrace(false) // always the event loop of the ui thread
+class BarRefreshEvent extends Event {
+
+	@Label("Value")
+	int value;
+
+	@Label("Coalesced")
+	@Description("Requests of refresh merged in this one since the previous refresh")
+	int coalesced;
+}
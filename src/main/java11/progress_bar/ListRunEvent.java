@@ -0,0 +1,26 @@
+package progress_bar;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Run of all the steps of a {@link ProgressList}
+ */
+@Name("progress_bar.ListRun")
+@Label("Progress List Run")
+@Category("Progress Bar")
+@Description("Execution of all the steps of a progress list")
+class ListRunEvent extends Event {
+
+	@Label("Steps")
+	int steps;
+
+	@Label("Completed Steps")
+	int completedSteps;
+
+	@Label("Cancelled")
+	boolean cancelled;
+}
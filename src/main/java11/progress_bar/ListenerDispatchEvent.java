@@ -0,0 +1,23 @@
+package progress_bar;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Notification of the listeners of a progress
+ */
+@Name("progress_bar.ListenerDispatch")
+@Label("Progress Listener Dispatch")
+@Category("Progress Bar")
+@Description("Notification of the listeners of a progress model or list")
+class ListenerDispatchEvent extends Event {
+
+	@Label("Source")
+	Class<?> source;
+
+	@Label("Listeners")
+	int listeners;
+}
@@ -0,0 +1,129 @@
+package progress_bar;
+
+import jdk.jfr.EventType;
+
+/**
+ * Flight recorder events of the library, used on Java 11 and later instead of
+ * the version in src/main/java. Each type of event can be enabled separately
+ * in the settings of the recording. The events are created only if their type
+ * is enabled, so that the cost is a check of a flag when the recorder is off.
+ */
+class ProgressEvents {
+
+	private static final EventType STEP = EventType.getEventType(StepEvent.class);
+	private static final EventType LIST_RUN = EventType.getEventType(ListRunEvent.class);
+	private static final EventType REFRESH = EventType.getEventType(BarRefreshEvent.class);
+	private static final EventType DISPATCH = EventType.getEventType(ListenerDispatchEvent.class);
+
+	private ProgressEvents() {}
+
+	public static Object beginStep() {
+
+		if (!STEP.isEnabled())
+			return null;
+
+		StepEvent event = new StepEvent();
+		event.begin();
+		return event;
+	}
+
+	public static void endStep(Object event, ProgressStep step, boolean completed) {
+
+		if (event == null)
+			return;
+
+		StepEvent stepEvent = (StepEvent) event;
+		stepEvent.end();
+
+		if (!stepEvent.shouldCommit())
+			return;
+
+		stepEvent.code = step.getCode();
+		stepEvent.name = step.getName();
+		stepEvent.completed = completed;
+		stepEvent.commit();
+	}
+
+	public static Object beginListRun() {
+
+		if (!LIST_RUN.isEnabled())
+			return null;
+
+		ListRunEvent event = new ListRunEvent();
+		event.begin();
+		return event;
+	}
+
+	public static void endListRun(Object event, ProgressList list, boolean cancelled) {
+
+		if (event == null)
+			return;
+
+		ListRunEvent runEvent = (ListRunEvent) event;
+		runEvent.end();
+
+		if (!runEvent.shouldCommit())
+			return;
+
+		runEvent.steps = list.getStepCount();
+		runEvent.completedSteps = list.getCompletedSteps();
+		runEvent.cancelled = cancelled;
+		runEvent.commit();
+	}
+
+	public static boolean isRefreshEnabled() {
+		return REFRESH.isEnabled();
+	}
+
+	public static Object beginRefresh() {
+
+		if (!REFRESH.isEnabled())
+			return null;
+
+		BarRefreshEvent event = new BarRefreshEvent();
+		event.begin();
+		return event;
+	}
+
+	public static void endRefresh(Object event, int value, int coalesced) {
+
+		if (event == null)
+			return;
+
+		BarRefreshEvent refreshEvent = (BarRefreshEvent) event;
+		refreshEvent.end();
+
+		if (!refreshEvent.shouldCommit())
+			return;
+
+		refreshEvent.value = value;
+		refreshEvent.coalesced = coalesced;
+		refreshEvent.commit();
+	}
+
+	public static Object beginDispatch() {
+
+		if (!DISPATCH.isEnabled())
+			return null;
+
+		ListenerDispatchEvent event = new ListenerDispatchEvent();
+		event.begin();
+		return event;
+	}
+
+	public static void endDispatch(Object event, Object source, int listeners) {
+
+		if (event == null)
+			return;
+
+		ListenerDispatchEvent dispatchEvent = (ListenerDispatchEvent) event;
+		dispatchEvent.end();
+
+		if (!dispatchEvent.shouldCommit())
+			return;
+
+		dispatchEvent.source = source.getClass();
+		dispatchEvent.listeners = listeners;
+		dispatchEvent.commit();
+	}
+}
@@ -0,0 +1,27 @@
+package progress_bar;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Execution of a {@link ProgressStep}
+ */
+@Name("progress_bar.Step")
+@Label("Progress Step")
+@Category("Progress Bar")
+@Description("Execution of a step of a progress list")
+class StepEvent extends Event {
+
+	@Label("Code")
+	String code;
+
+	@Label("Name")
+	String name;
+
+	@Label("Completed")
+	@Description("False if the step failed or was cancelled")
+	boolean completed;
+}
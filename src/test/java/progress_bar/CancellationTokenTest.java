@@ -0,0 +1,86 @@
+package progress_bar;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CancellationException;
+
+import org.junit.Test;
+
+/**
+ * Child tokens of a {@link CancellationToken} and interruption of the steps
+ * when they are cancelled
+ */
+public class CancellationTokenTest {
+
+	@Test
+	public void childIsCancelledWithItsParent() {
+
+		CancellationToken parent = new CancellationToken();
+		CancellationToken child = parent.newChild();
+
+		parent.cancel();
+
+		assertTrue(child.isCancelled());
+	}
+
+	@Test
+	public void childIsCancelledAlone() {
+
+		CancellationToken parent = new CancellationToken();
+		CancellationToken child = parent.newChild();
+		CancellationToken other = parent.newChild();
+
+		child.cancel();
+
+		assertTrue(child.isCancelled());
+		assertFalse(parent.isCancelled());
+		assertFalse(other.isCancelled());
+	}
+
+	@Test
+	public void closedChildStopsFollowingItsParent() {
+
+		CancellationToken parent = new CancellationToken();
+		CancellationToken child = parent.newChild();
+
+		child.close();
+		parent.cancel();
+
+		assertFalse(child.isCancelled());
+	}
+
+	@Test
+	public void childOfACancelledTokenIsCancelled() {
+
+		CancellationToken parent = new CancellationToken();
+		parent.cancel();
+
+		assertTrue(parent.newChild().isCancelled());
+	}
+
+	@Test
+	public void cancelledStepDoesNotLeaveTheInterruption() throws Exception {
+
+		ProgressStep step = new ProgressStep("export") {
+			@Override
+			public void execute() throws Exception {
+
+				// cancelled by itself, e.g. by a watchdog in the meantime
+				getCancellationToken().cancel();
+				getCancellationToken().throwIfCancelled();
+			}
+		};
+
+		step.setInterruptible(true);
+
+		try {
+			step.start();
+		} catch (CancellationException e) {
+			// expected
+		}
+
+		// the interruption was meant only for the step
+		assertFalse(Thread.interrupted());
+	}
+}
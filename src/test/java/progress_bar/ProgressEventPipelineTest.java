@@ -0,0 +1,248 @@
+package progress_bar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import progress_bar.ProgressEventPipeline.OverflowPolicy;
+
+/**
+ * Events of a {@link ProgressEventPipeline} received by slow listeners, with
+ * the different {@link OverflowPolicy}
+ */
+public class ProgressEventPipelineTest {
+
+	/**
+	 * Listener which records the events. The first event can be held until
+	 * {@link #release()}, to fill the ring.
+	 */
+	private static class RecordingListener implements ProgressListener {
+
+		private List<Double> current = new ArrayList<>();
+		private List<Double> max = new ArrayList<>();
+		private CountDownLatch entered = new CountDownLatch(1);
+		private CountDownLatch released;
+		private CountDownLatch done = new CountDownLatch(1);
+		private boolean completed;
+		private Exception stopped;
+
+		public RecordingListener(boolean hold) {
+			this.released = new CountDownLatch(hold ? 1 : 0);
+		}
+
+		@Override
+		public void progressChanged(double currentProgress, double maxProgress) {
+
+			this.current.add(currentProgress);
+			this.max.add(maxProgress);
+
+			this.entered.countDown();
+
+			try {
+				this.released.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		@Override
+		public void progressChanged(double currentProgress) {
+			progressChanged(currentProgress, 0);
+		}
+
+		@Override
+		public void progressCompleted() {
+			this.completed = true;
+			this.done.countDown();
+		}
+
+		@Override
+		public void progressStopped(Exception exception) {
+			this.stopped = exception;
+			this.done.countDown();
+		}
+
+		public void awaitFirst() throws InterruptedException {
+			assertTrue(this.entered.await(10, TimeUnit.SECONDS));
+		}
+
+		public void release() {
+			this.released.countDown();
+		}
+
+		public void awaitDone() throws InterruptedException {
+			assertTrue(this.done.await(10, TimeUnit.SECONDS));
+		}
+	}
+
+	@Test
+	public void dropOldestKeepsTheLatestEvents() throws Exception {
+
+		ProgressEventPipeline pipeline = new ProgressEventPipeline(4, OverflowPolicy.DROP_OLDEST);
+		RecordingListener listener = new RecordingListener(true);
+		pipeline.addListener(listener);
+
+		try {
+
+			pipeline.progressChanged(1, 1000);
+			listener.awaitFirst();
+
+			// the worker never waits for the held listener
+			for (int i = 2; i <= 1000; i++)
+				pipeline.progressChanged(i, 1000);
+
+			pipeline.progressCompleted();
+
+			listener.release();
+			listener.awaitDone();
+
+			// only the last 4 events are still in the ring
+			assertEquals(Arrays.asList(1d, 998d, 999d, 1000d), listener.current);
+			assertTrue(listener.completed);
+			assertEquals(1001 - 1 - 4, pipeline.getDropped());
+
+		} finally {
+			pipeline.close();
+		}
+	}
+
+	@Test
+	public void coalesceDeliversTheLastProgressBeforeTheCompletion() throws Exception {
+
+		ProgressEventPipeline pipeline = new ProgressEventPipeline(4, OverflowPolicy.COALESCE);
+		RecordingListener listener = new RecordingListener(true);
+		pipeline.addListener(listener);
+
+		try {
+
+			pipeline.progressChanged(1, 1000);
+			listener.awaitFirst();
+
+			// the progresses after the full ring are coalesced, the worker never waits
+			for (int i = 2; i <= 1000; i++)
+				pipeline.progressChanged(i, 1000);
+
+			listener.release();
+
+			// waits for space, after the coalesced progress
+			pipeline.progressCompleted();
+
+			listener.awaitDone();
+
+			assertEquals(Arrays.asList(1d, 2d, 3d, 4d, 5d, 1000d), listener.current);
+			assertTrue(listener.completed);
+			assertEquals(0, pipeline.getDropped());
+
+		} finally {
+			pipeline.close();
+		}
+	}
+
+	@Test
+	public void coalesceNeverLosesTheStop() throws Exception {
+
+		ProgressEventPipeline pipeline = new ProgressEventPipeline(2, OverflowPolicy.COALESCE);
+		RecordingListener listener = new RecordingListener(true);
+		pipeline.addListener(listener);
+
+		Exception failure = new IllegalStateException("failed");
+
+		try {
+
+			pipeline.progressChanged(1, 10);
+			listener.awaitFirst();
+
+			for (int i = 2; i <= 10; i++)
+				pipeline.progressChanged(i, 10);
+
+			listener.release();
+			pipeline.progressStopped(failure);
+
+			listener.awaitDone();
+
+			assertEquals(10d, listener.current.get(listener.current.size() - 1), 0);
+			assertEquals(failure, listener.stopped);
+
+		} finally {
+			pipeline.close();
+		}
+	}
+
+	@Test
+	public void blockLosesNothingUnderContention() throws Exception {
+
+		final int threads = 8;
+		final int events = 500;
+
+		final ProgressEventPipeline pipeline = new ProgressEventPipeline(8, OverflowPolicy.BLOCK);
+		RecordingListener listener = new RecordingListener(false);
+		pipeline.addListener(listener);
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		final CountDownLatch start = new CountDownLatch(1);
+
+		try {
+
+			Future<?>[] workers = new Future<?>[threads];
+
+			for (int i = 0; i < threads; i++) {
+
+				// the maximum tells the thread of the event
+				final int thread = i;
+
+				workers[i] = executor.submit(new Runnable() {
+					@Override
+					public void run() {
+
+						try {
+							start.await();
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+							return;
+						}
+
+						for (int j = 1; j <= events; j++)
+							pipeline.progressChanged(j, thread);
+					}
+				});
+			}
+
+			start.countDown();
+
+			for (Future<?> worker : workers)
+				worker.get(30, TimeUnit.SECONDS);
+
+			pipeline.progressCompleted();
+			listener.awaitDone();
+
+			assertEquals(threads * events, listener.current.size());
+			assertEquals(0, pipeline.getDropped());
+
+			// the events of each thread in the same order
+			double[] last = new double[threads];
+
+			for (int i = 0; i < listener.current.size(); i++) {
+
+				int thread = listener.max.get(i).intValue();
+				double current = listener.current.get(i);
+
+				assertEquals(last[thread] + 1, current, 0);
+				last[thread] = current;
+			}
+
+		} finally {
+			executor.shutdownNow();
+			pipeline.close();
+		}
+	}
+}
@@ -0,0 +1,177 @@
+package progress_bar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNoException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.swt.SWTError;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Shell;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Order of the jobs of a {@link ProgressJobManager} and release of its
+ * workers. The rows need a display, the tests are skipped without it (e.g. on
+ * a headless build server).
+ */
+public class ProgressJobManagerTest {
+
+	private Display display;
+	private FormMultipleProgress form;
+	private ProgressJobManager manager;
+
+	@Before
+	public void setUp() {
+
+		try {
+			this.display = new Display();
+		} catch (SWTError | LinkageError e) {
+			assumeNoException("No display available", e);
+		}
+
+		this.form = new FormMultipleProgress(new Shell(this.display));
+	}
+
+	@After
+	public void tearDown() {
+
+		if (this.manager != null)
+			this.manager.shutdown();
+
+		if (this.display != null)
+			this.display.dispose();
+	}
+
+	/**
+	 * Wait until all the submitted jobs are finished. The rows are refreshed
+	 * later in the ui thread, the jobs do not wait for it.
+	 */
+	private void awaitIdle() throws InterruptedException {
+
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+
+		while (!this.manager.getTracker().isIdle()) {
+			assertTrue("The jobs did not finish", System.nanoTime() - deadline < 0);
+			Thread.sleep(10);
+		}
+	}
+
+	/**
+	 * Job which records its name when it runs
+	 */
+	private static ProgressJob record(final List<String> executed, final String name) {
+		return new ProgressJob() {
+			@Override
+			public void run(IProgress progress) throws Exception {
+				executed.add(name);
+			}
+		};
+	}
+
+	@Test
+	public void waitingJobsStartByPriority() throws Exception {
+
+		this.manager = new ProgressJobManager(this.form, 1);
+
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+
+		// keeps the only worker busy while the others are submitted
+		this.manager.submit("blocker", new ProgressJob() {
+			@Override
+			public void run(IProgress progress) throws Exception {
+				started.countDown();
+				release.await();
+			}
+		});
+
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+
+		List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+
+		this.manager.submit("low", 0, record(executed, "low"));
+		this.manager.submit("high", 10, record(executed, "high"));
+		this.manager.submit("medium", 5, record(executed, "medium"));
+		this.manager.submit("high again", 10, record(executed, "high again"));
+
+		assertEquals(4, this.manager.getTracker().getQueued());
+
+		release.countDown();
+		awaitIdle();
+
+		// same priority in order of submission
+		assertEquals(Arrays.asList("high", "high again", "medium", "low"), executed);
+		assertEquals(5, this.manager.getTracker().getDone());
+	}
+
+	@Test
+	public void failedJobsReleaseTheWorker() throws Exception {
+
+		this.manager = new ProgressJobManager(this.form, 1);
+
+		List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+
+		this.manager.submit("exception", new ProgressJob() {
+			@Override
+			public void run(IProgress progress) throws Exception {
+				throw new IllegalStateException("Job failed");
+			}
+		});
+
+		// stops the worker, another one takes the waiting jobs
+		this.manager.submit("error", new ProgressJob() {
+			@Override
+			public void run(IProgress progress) throws Exception {
+				throw new AssertionError("Job failed badly");
+			}
+		});
+
+		this.manager.submit("last", record(executed, "last"));
+
+		awaitIdle();
+
+		assertEquals(Arrays.asList("last"), executed);
+		assertEquals(1, this.manager.getTracker().getDone());
+		assertEquals(2, this.manager.getTracker().getFailed());
+	}
+
+	@Test
+	public void cancelledJobIsNotStarted() throws Exception {
+
+		this.manager = new ProgressJobManager(this.form, 1);
+
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+
+		this.manager.submit("blocker", new ProgressJob() {
+			@Override
+			public void run(IProgress progress) throws Exception {
+				started.countDown();
+				release.await();
+			}
+		});
+
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+
+		List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+
+		this.manager.submit("cancelled", record(executed, "cancelled")).cancel();
+		this.manager.submit("next", record(executed, "next"));
+
+		release.countDown();
+		awaitIdle();
+
+		assertEquals(Arrays.asList("next"), executed);
+		assertEquals(2, this.manager.getTracker().getDone());
+		assertEquals(1, this.manager.getTracker().getFailed());
+	}
+}
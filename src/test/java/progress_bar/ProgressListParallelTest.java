@@ -0,0 +1,179 @@
+package progress_bar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Steps of a {@link ProgressList} executed in parallel, respecting their
+ * dependencies
+ */
+public class ProgressListParallelTest {
+
+	private static class SimpleStep extends ProgressStep {
+
+		private boolean fail;
+
+		public SimpleStep(String code, boolean fail, String... dependencies) {
+			super(code);
+			this.fail = fail;
+			dependsOn(dependencies);
+		}
+
+		@Override
+		public void execute() throws Exception {
+			if (this.fail)
+				throw new IllegalStateException("Step " + getCode() + " failed");
+		}
+	}
+
+	/**
+	 * Record the codes of the failed steps
+	 */
+	private static List<String> recordFailed(ProgressList list) {
+
+		final List<String> failed = Collections.synchronizedList(new ArrayList<String>());
+
+		list.addProgressListener(new ProgressStepListener() {
+
+			@Override
+			public void progressStepStarted(ProgressStep step) {}
+
+			@Override
+			public void progressChanged(ProgressStep step, double addProgress, int maxProgress) {}
+
+			@Override
+			public void failed(ProgressStep step) {
+				failed.add(step.getCode());
+			}
+		});
+
+		return failed;
+	}
+
+	@Test
+	public void skippedStepsAreNotifiedAsFailed() throws Exception {
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+
+		try {
+
+			ProgressList list = new ProgressList(100);
+			list.setExecutor(executor);
+			list.add(new SimpleStep("load", true));
+			list.add(new SimpleStep("parse", false, "load"));
+			list.add(new SimpleStep("export", false, "parse"));
+			list.add(new SimpleStep("clean", false));
+
+			List<String> failed = recordFailed(list);
+
+			list.start();
+
+			Collections.sort(failed);
+			assertEquals(Arrays.asList("export", "load", "parse"), failed);
+			assertEquals(1, list.getCompletedSteps());
+
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void startedInTheOnlyThreadOfAForkJoinPool() throws Exception {
+
+		final ForkJoinPool pool = new ForkJoinPool(1);
+
+		try {
+
+			final ProgressList list = new ProgressList(100);
+			list.setExecutor(pool);
+			list.add(new SimpleStep("load", false));
+			list.add(new SimpleStep("parse", false, "load"));
+			list.add(new SimpleStep("export", false, "parse"));
+
+			// the waiting thread lets the pool execute the steps
+			pool.submit(new Callable<Void>() {
+				@Override
+				public Void call() {
+					list.start();
+					return null;
+				}
+			}).get(10, TimeUnit.SECONDS);
+
+			assertEquals(3, list.getCompletedSteps());
+
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test
+	public void interruptionCancelsTheRun() throws Exception {
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		final CountDownLatch started = new CountDownLatch(1);
+
+		try {
+
+			ProgressList list = new ProgressList(100);
+			list.setExecutor(executor);
+
+			// runs until cancelled
+			list.add(new ProgressStep("wait") {
+				@Override
+				public void execute() throws Exception {
+
+					started.countDown();
+
+					while (!getCancellationToken().isCancelled())
+						Thread.sleep(1);
+
+					getCancellationToken().throwIfCancelled();
+				}
+			});
+
+			final Thread caller = Thread.currentThread();
+
+			Thread interrupter = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						started.await();
+						caller.interrupt();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			});
+
+			interrupter.start();
+
+			List<String> failed = recordFailed(list);
+
+			list.start();
+
+			// returned with the interruption, once the step stopped
+			assertTrue(Thread.interrupted());
+			assertTrue(list.getCancellationToken().isCancelled());
+			assertEquals(Arrays.asList("wait"), failed);
+			assertEquals(0, list.getCompletedSteps());
+
+			interrupter.join();
+
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
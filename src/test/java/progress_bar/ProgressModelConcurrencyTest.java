@@ -0,0 +1,170 @@
+package progress_bar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Progress added concurrently by several threads to a {@link ProgressModel},
+ * directly or through a {@link CustomProgressBar}
+ */
+public class ProgressModelConcurrencyTest {
+
+	private static final int THREADS = 32;
+
+	/**
+	 * Add the same progress from all the threads, starting them together
+	 *
+	 * @param model     where the progress is added
+	 * @param additions additions of each thread
+	 * @param progress  progress of each addition
+	 * @throws Exception
+	 */
+	private static void addConcurrently(final IProgress model, final int additions, final double progress)
+			throws Exception {
+
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		final CountDownLatch start = new CountDownLatch(1);
+
+		try {
+
+			Future<?>[] workers = new Future<?>[THREADS];
+
+			for (int i = 0; i < THREADS; i++) {
+				workers[i] = executor.submit(new Runnable() {
+					@Override
+					public void run() {
+
+						try {
+							start.await();
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+							return;
+						}
+
+						for (int j = 0; j < additions; j++)
+							model.addProgress(progress);
+					}
+				});
+			}
+
+			start.countDown();
+
+			// rethrows the failures of the workers
+			for (Future<?> worker : workers)
+				worker.get(30, TimeUnit.SECONDS);
+
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void noProgressIsLost() throws Exception {
+
+		ProgressModel model = new ProgressModel();
+
+		// 32 threads * 2560 * 1/1024 = 80
+		addConcurrently(model, 2560, 1d / 1024);
+
+		assertEquals(80, model.getProgress());
+	}
+
+	@Test
+	public void fractionsReachTheWholeProgress() throws Exception {
+
+		ProgressModel model = new ProgressModel();
+
+		// 32 threads * 300 * 1/96 = 100, not exact in binary
+		addConcurrently(model, 300, 1d / 96);
+
+		assertEquals(100, model.getProgress());
+		assertTrue(model.isCompleted());
+	}
+
+	@Test
+	public void listenersSeeIncreasingProgress() throws Exception {
+
+		ProgressModel model = new ProgressModel();
+
+		final AtomicInteger last = new AtomicInteger(-1);
+		final AtomicInteger outOfOrder = new AtomicInteger();
+
+		model.addProgressListener(new ProgressListener() {
+
+			@Override
+			public void progressChanged(double currentProgress, double maxProgress) {
+				if ((int) currentProgress <= last.getAndSet((int) currentProgress))
+					outOfOrder.incrementAndGet();
+			}
+
+			@Override
+			public void progressChanged(double currentProgress) {}
+
+			@Override
+			public void progressStopped(Exception e) {}
+
+			@Override
+			public void progressCompleted() {}
+		});
+
+		addConcurrently(model, 2560, 1d / 1024);
+
+		assertEquals(80, last.get());
+		assertEquals(0, outOfOrder.get());
+	}
+
+	@Test
+	public void barCoalescesTheRefreshes() throws Exception {
+
+		final AtomicInteger frames = new AtomicInteger();
+		final Runnable[] pending = new Runnable[1];
+
+		// ui thread which never runs the frames until asked
+		UpdateDispatcher dispatcher = UpdateDispatcher.create(new UpdateDispatcher.UiExecutor() {
+
+			@Override
+			public void asyncExec(Runnable runnable) {
+				frames.incrementAndGet();
+				pending[0] = runnable;
+			}
+
+			@Override
+			public void timerExec(int millis, Runnable runnable) {
+				asyncExec(runnable);
+			}
+
+			@Override
+			public boolean isDisposed() {
+				return false;
+			}
+		});
+
+		dispatcher.setFrameInterval(0);
+
+		ProgressModel model = new ProgressModel();
+		CustomProgressBar bar = new CustomProgressBar(model, dispatcher);
+
+		addConcurrently(bar, 2560, 1d / 1024);
+
+		assertEquals(80, model.getProgress());
+
+		// all the refreshes wait for the same frame
+		assertEquals(1, frames.get());
+
+		pending[0].run();
+		bar.setProgress(90);
+
+		// the next refresh needs a new frame
+		assertEquals(2, frames.get());
+		assertEquals(90, model.getProgress());
+	}
+}
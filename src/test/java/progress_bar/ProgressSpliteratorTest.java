@@ -0,0 +1,133 @@
+package progress_bar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterators;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.StreamSupport;
+
+import org.junit.Test;
+
+/**
+ * Progress reported by the parallel streams of a {@link ProgressSpliterator}
+ */
+public class ProgressSpliteratorTest {
+
+	private static final int SIZE = 200_000;
+
+	private static List<Integer> createList() {
+
+		List<Integer> list = new ArrayList<>(SIZE);
+
+		for (int i = 0; i < SIZE; i++)
+			list.add(i);
+
+		return list;
+	}
+
+	/**
+	 * Count the changes of the progress
+	 */
+	private static AtomicInteger countChanges(ProgressModel model) {
+
+		final AtomicInteger changes = new AtomicInteger();
+
+		model.addProgressListener(new ProgressListener() {
+
+			@Override
+			public void progressChanged(double currentProgress, double maxProgress) {
+				changes.incrementAndGet();
+			}
+
+			@Override
+			public void progressChanged(double currentProgress) {}
+
+			@Override
+			public void progressStopped(Exception e) {}
+
+			@Override
+			public void progressCompleted() {}
+		});
+
+		return changes;
+	}
+
+	@Test
+	public void parallelStreamReportsTheWholeWork() {
+
+		ProgressModel model = new ProgressModel();
+		AtomicInteger changes = countChanges(model);
+
+		final AtomicLong sum = new AtomicLong();
+
+		ProgressSpliterator.stream(createList(), model, 100).forEach(new Consumer<Integer>() {
+			@Override
+			public void accept(Integer element) {
+				sum.addAndGet(element);
+			}
+		});
+
+		assertEquals((long) SIZE * (SIZE - 1) / 2, sum.get());
+		assertEquals(100, model.getProgress());
+		assertTrue(model.isCompleted());
+
+		// reported by batches, not by element
+		assertTrue(changes.get() <= 101);
+	}
+
+	@Test
+	public void unsizedSourceReportsTheGivenTotal() {
+
+		ProgressModel model = new ProgressModel();
+		final AtomicLong consumed = new AtomicLong();
+
+		ProgressSpliterator<Integer> spliterator = new ProgressSpliterator<>(
+				Spliterators.spliteratorUnknownSize(createList().iterator(), 0), model, 100, SIZE);
+
+		StreamSupport.stream(spliterator, true).forEach(new Consumer<Integer>() {
+			@Override
+			public void accept(Integer element) {
+				consumed.incrementAndGet();
+			}
+		});
+
+		assertEquals(SIZE, consumed.get());
+		assertEquals(100, model.getProgress());
+	}
+
+	@Test
+	public void underestimatedTotalDoesNotExceedTheWork() {
+
+		ProgressModel model = new ProgressModel();
+		model.addProgress(50);
+
+		ProgressSpliterator<Integer> spliterator = new ProgressSpliterator<>(createList().spliterator(), model, 30,
+				SIZE / 10);
+
+		// count() would not consume the sized stream
+		StreamSupport.stream(spliterator, true).forEach(new Consumer<Integer>() {
+			@Override
+			public void accept(Integer element) {}
+		});
+
+		assertEquals(80, model.getProgress());
+	}
+
+	@Test(expected = CancellationException.class)
+	public void cancelledProgressStopsTheStream() {
+
+		ProgressModel model = new ProgressModel();
+		model.getCancellationToken().cancel();
+
+		ProgressSpliterator.stream(createList(), model, 100).forEach(new Consumer<Integer>() {
+			@Override
+			public void accept(Integer element) {}
+		});
+	}
+}
@@ -0,0 +1,195 @@
+package progress_bar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Stalls detected by a {@link ProgressWatchdog}. The checks are called with a
+ * fake clock, the thread of the watchdog never runs during the tests.
+ */
+public class ProgressWatchdogTest {
+
+	private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	// never checks by itself
+	private static final long CHECK_INTERVAL = TimeUnit.HOURS.toMillis(1);
+
+	private List<ProgressWatchdog.Stall> stalls;
+	private ProgressWatchdog watchdog;
+
+	private static class IdleStep extends ProgressStep {
+
+		public IdleStep(String code) {
+			super(code);
+		}
+
+		@Override
+		public void execute() throws Exception {}
+	}
+
+	@Before
+	public void setUp() {
+		this.stalls = new CopyOnWriteArrayList<>();
+	}
+
+	@After
+	public void tearDown() {
+		if (this.watchdog != null)
+			this.watchdog.close();
+	}
+
+	private ProgressWatchdog createWatchdog(long stallSeconds) {
+
+		this.watchdog = new ProgressWatchdog(stallSeconds, TimeUnit.SECONDS, CHECK_INTERVAL);
+
+		this.watchdog.addStallListener(new StallListener() {
+			@Override
+			public void taskStalled(ProgressWatchdog.Stall stall) {
+				ProgressWatchdogTest.this.stalls.add(stall);
+			}
+		});
+
+		return this.watchdog;
+	}
+
+	@Test
+	public void stepWithoutKeepAliveIsReported() {
+
+		ProgressWatchdog watchdog = createWatchdog(2);
+		IdleStep step = new IdleStep("export");
+
+		watchdog.watch(step);
+		long start = System.nanoTime();
+
+		watchdog.check(start + SECOND);
+		assertTrue(this.stalls.isEmpty());
+
+		// never called keepAlive, blocked since it was watched
+		watchdog.check(start + 3 * SECOND);
+
+		assertEquals(1, this.stalls.size());
+
+		ProgressWatchdog.Stall stall = this.stalls.get(0);
+		assertEquals("export", stall.getName());
+		assertFalse(stall.isTimeout());
+		assertTrue(stall.getStalledMillis() >= 3000);
+		assertEquals(Thread.currentThread(), stall.getThread());
+		assertNotNull(stall.getThreadDump());
+
+		// not cancelled by default
+		assertFalse(step.getCancellationToken().isCancelled());
+	}
+
+	@Test
+	public void stallIsReportedOnceUntilTheStepProgresses() {
+
+		ProgressWatchdog watchdog = createWatchdog(2);
+		IdleStep step = new IdleStep("export");
+
+		watchdog.watch(step);
+		long start = System.nanoTime();
+
+		watchdog.check(start + 3 * SECOND);
+		watchdog.check(start + 4 * SECOND);
+
+		assertEquals(1, this.stalls.size());
+
+		step.keepAlive();
+
+		watchdog.check(start + 5 * SECOND);
+		watchdog.check(start + 6 * SECOND);
+		assertEquals(1, this.stalls.size());
+
+		// stalled again since the keepAlive
+		watchdog.check(start + 7 * SECOND);
+
+		assertEquals(2, this.stalls.size());
+		assertTrue(this.stalls.get(1).getStalledMillis() >= 2000);
+		assertTrue(this.stalls.get(1).getStalledMillis() < 3000);
+	}
+
+	@Test
+	public void stalledModelIsCancelled() {
+
+		ProgressWatchdog watchdog = createWatchdog(2);
+		watchdog.setCancelOnStall(true);
+
+		ProgressModel model = new ProgressModel();
+		model.addProgress(10);
+
+		watchdog.watch("import", model, null);
+		long start = System.nanoTime();
+
+		model.addProgress(10);
+		watchdog.check(start + SECOND);
+		watchdog.check(start + 2 * SECOND);
+		assertTrue(this.stalls.isEmpty());
+
+		watchdog.check(start + 4 * SECOND);
+
+		assertEquals(1, this.stalls.size());
+		assertNull(this.stalls.get(0).getThreadDump());
+		assertTrue(model.getCancellationToken().isCancelled());
+	}
+
+	@Test
+	public void completedModelIsNotWatched() {
+
+		ProgressWatchdog watchdog = createWatchdog(2);
+
+		ProgressModel model = new ProgressModel();
+		watchdog.watch("import", model, null);
+
+		model.addProgress(100);
+		watchdog.check(System.nanoTime() + 10 * SECOND);
+
+		assertTrue(this.stalls.isEmpty());
+		assertEquals(0, watchdog.getWatchedCount());
+	}
+
+	@Test
+	public void timeoutReportsTheRunningTime() {
+
+		// only the timeouts
+		ProgressWatchdog watchdog = createWatchdog(0);
+
+		IdleStep step = new IdleStep("export");
+		step.setTimeout(5, TimeUnit.SECONDS);
+
+		watchdog.watch(step);
+		long start = System.nanoTime();
+
+		// progressing does not extend the timeout
+		step.keepAlive();
+		watchdog.check(start + 4 * SECOND);
+		step.keepAlive();
+
+		assertTrue(this.stalls.isEmpty());
+		assertFalse(step.getCancellationToken().isCancelled());
+
+		watchdog.check(start + 6 * SECOND);
+
+		assertEquals(1, this.stalls.size());
+
+		ProgressWatchdog.Stall stall = this.stalls.get(0);
+		assertTrue(stall.isTimeout());
+		assertTrue(stall.getStalledMillis() >= 6000);
+		assertTrue(step.getCancellationToken().isCancelled());
+
+		// reported only once
+		assertEquals(0, watchdog.getWatchedCount());
+		watchdog.check(start + 7 * SECOND);
+		assertEquals(1, this.stalls.size());
+	}
+}
@@ -0,0 +1,161 @@
+package progress_bar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Runs of a {@link ProgressList} resumed with a {@link StepCheckpoint}, and
+ * recovery of checkpoints not completely written
+ */
+public class StepCheckpointTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Step which counts its executions and can fail
+	 */
+	private static class CountingStep extends ProgressStep {
+
+		private AtomicInteger executions = new AtomicInteger();
+		private Object result;
+		private boolean fail;
+
+		public CountingStep(String code, Object result, boolean fail) {
+			super(code);
+			this.result = result;
+			this.fail = fail;
+		}
+
+		@Override
+		public void execute() throws Exception {
+
+			this.executions.incrementAndGet();
+
+			if (this.fail)
+				throw new IOException("Step " + getCode() + " failed");
+
+			if (this.result != null)
+				setData(this.result);
+		}
+	}
+
+	/**
+	 * Append bytes to the file, as a write interrupted by a crash
+	 *
+	 * @param file
+	 * @param code  code of the partial step
+	 * @param bytes bytes after the code
+	 * @throws IOException
+	 */
+	private static void appendPartial(Path file, String code, byte[] bytes) throws IOException {
+
+		try (OutputStream output = Files.newOutputStream(file, StandardOpenOption.APPEND);
+				DataOutputStream data = new DataOutputStream(output);) {
+			data.writeUTF(code);
+			data.write(bytes);
+		}
+	}
+
+	@Test
+	public void resumedRunSkipsTheCompletedSteps() throws Exception {
+
+		Path file = this.folder.getRoot().toPath().resolve("run.checkpoint");
+
+		// first run, the second step fails
+		ProgressList first = new ProgressList(100);
+		first.setCheckpoint(new StepCheckpoint(file));
+		first.add(new CountingStep("load", new ArrayList<>(Arrays.asList("a", "b")), false));
+		first.add(new CountingStep("export", null, true));
+		first.start();
+
+		assertEquals(1, first.getCompletedSteps());
+
+		// second run in a new process
+		StepCheckpoint checkpoint = new StepCheckpoint(file);
+		assertEquals(Arrays.asList("load"), new ArrayList<>(checkpoint.getCompleted()));
+
+		CountingStep load = new CountingStep("load", null, false);
+		CountingStep export = new CountingStep("export", null, false);
+
+		ProgressList second = new ProgressList(100);
+		second.setCheckpoint(checkpoint);
+		second.add(load);
+		second.add(export);
+		second.start();
+
+		assertEquals(0, load.executions.get());
+		assertEquals(Arrays.asList("a", "b"), load.getData());
+		assertEquals(1, export.executions.get());
+		assertEquals(2, second.getCompletedSteps());
+
+		// the next run starts from scratch
+		assertFalse(Files.exists(file));
+		assertTrue(checkpoint.getCompleted().isEmpty());
+	}
+
+	@Test
+	public void truncatedTailIsRemoved() throws Exception {
+
+		Path file = this.folder.getRoot().toPath().resolve("truncated.checkpoint");
+
+		StepCheckpoint checkpoint = new StepCheckpoint(file);
+		checkpoint.record("load", "data");
+		checkpoint.record("parse", null);
+
+		long size = Files.size(file);
+
+		// killed while writing the length of the data
+		appendPartial(file, "export", new byte[] { 0, 0 });
+
+		checkpoint = new StepCheckpoint(file);
+
+		assertEquals(Arrays.asList("load", "parse"), new ArrayList<>(checkpoint.getCompleted()));
+		assertEquals("data", checkpoint.getData("load"));
+		assertNull(checkpoint.getData("parse"));
+		assertEquals(size, Files.size(file));
+
+		// the new steps are readable after the valid ones
+		checkpoint.record("export", 42);
+
+		checkpoint = new StepCheckpoint(file);
+
+		assertEquals(Arrays.asList("load", "parse", "export"), new ArrayList<>(checkpoint.getCompleted()));
+		assertEquals(42, checkpoint.getData("export"));
+	}
+
+	@Test
+	public void invalidLengthIsNotAllocated() throws Exception {
+
+		Path file = this.folder.getRoot().toPath().resolve("corrupted.checkpoint");
+
+		StepCheckpoint checkpoint = new StepCheckpoint(file);
+		checkpoint.record("load", "data");
+
+		long size = Files.size(file);
+
+		// a length far beyond the end of the file
+		appendPartial(file, "export", new byte[] { 0x7f, (byte) 0xff, (byte) 0xff, (byte) 0xff, 1, 2, 3 });
+
+		checkpoint = new StepCheckpoint(file);
+
+		assertEquals(Arrays.asList("load"), new ArrayList<>(checkpoint.getCompleted()));
+		assertEquals(size, Files.size(file));
+	}
+}
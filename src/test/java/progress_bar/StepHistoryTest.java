@@ -0,0 +1,107 @@
+package progress_bar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Expected durations of a {@link StepHistory}, kept across the runs
+ */
+public class StepHistoryTest {
+
+	// code "export" and a duration
+	private static final long RECORD_LENGTH = StepHistory.getUTFLength("export") + Long.BYTES;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void recentRunsWeighMore() throws Exception {
+
+		StepHistory history = new StepHistory(this.folder.getRoot().toPath().resolve("weights.history"));
+
+		assertEquals(-1, history.getExpectedTime("export"), 0);
+
+		history.record("export", 100);
+		assertEquals(100, history.getExpectedTime("export"), 0);
+
+		// 100 + 0.3 * (200 - 100)
+		history.record("export", 200);
+		assertEquals(130, history.getExpectedTime("export"), 1e-9);
+
+		// the steps are independent
+		history.record("load", 10);
+		assertEquals(10, history.getExpectedTime("load"), 0);
+		assertEquals(130, history.getExpectedTime("export"), 1e-9);
+	}
+
+	@Test
+	public void historyIsReloaded() throws Exception {
+
+		Path file = this.folder.getRoot().toPath().resolve("reload.history");
+
+		StepHistory history = new StepHistory(file);
+		history.record("export", 100);
+		history.record("export", 200);
+
+		history = new StepHistory(file);
+
+		assertEquals(130, history.getExpectedTime("export"), 1e-9);
+	}
+
+	@Test
+	public void truncatedTailIsRemoved() throws Exception {
+
+		Path file = this.folder.getRoot().toPath().resolve("truncated.history");
+
+		StepHistory history = new StepHistory(file);
+		history.record("export", 100);
+
+		// killed while writing the duration
+		try (OutputStream output = Files.newOutputStream(file, StandardOpenOption.APPEND);
+				DataOutputStream data = new DataOutputStream(output);) {
+			data.writeUTF("load");
+			data.write(new byte[] { 0, 0, 1 });
+		}
+
+		history = new StepHistory(file);
+
+		assertEquals(100, history.getExpectedTime("export"), 0);
+		assertEquals(-1, history.getExpectedTime("load"), 0);
+		assertEquals(RECORD_LENGTH, Files.size(file));
+
+		// the new records are readable after the valid ones
+		history.record("export", 200);
+
+		history = new StepHistory(file);
+
+		assertEquals(130, history.getExpectedTime("export"), 1e-9);
+	}
+
+	@Test
+	public void oldRecordsAreCompacted() throws Exception {
+
+		Path file = this.folder.getRoot().toPath().resolve("compact.history");
+
+		StepHistory history = new StepHistory(file);
+
+		for (int i = 0; i < 100; i++)
+			history.record("export", 100);
+
+		// rewritten with the estimate before growing too much
+		assertTrue(Files.size(file) <= 8 * RECORD_LENGTH);
+
+		history = new StepHistory(file);
+
+		assertEquals(100, history.getExpectedTime("export"), 0);
+	}
+}